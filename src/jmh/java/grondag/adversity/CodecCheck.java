@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package grondag.adversity;
+
+import grondag.adversity.block.treeheart.MemoryTreeWorld;
+import grondag.adversity.block.treeheart.PosCodecCheck;
+import grondag.adversity.packet.DoomS2CCheck;
+
+/**
+ * Encodes and decodes saved and network formats and checks nothing changes
+ * on the way. Exits with status 1 if any case fails - for CI.
+ */
+public class CodecCheck {
+	public static void main(String[] args) {
+		MemoryTreeWorld.bootstrap();
+
+		final int failures = PosCodecCheck.run() + DoomS2CCheck.run();
+
+		System.out.println(failures == 0 ? "All codec checks passed" : failures + " codec checks failed");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import java.util.Random;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import net.minecraft.util.math.BlockPos;
+
+/** Synthetic tree shapes for benchmarks - no world needed */
+public enum BenchTrees {
+	;
+
+	public static final BlockPos ORIGIN = new BlockPos(8, 64, 8);
+
+	/** Trunk from bedrock to full height plus random outward branches in the canopy */
+	public static int[] logs(long seed, int branchCount) {
+		final IntArrayList result = new IntArrayList();
+		final int originY = ORIGIN.getY();
+
+		for (int x = -TreeUtils.TRUNK_RADIUS; x <= TreeUtils.TRUNK_RADIUS; x++) {
+			for (int z = -TreeUtils.TRUNK_RADIUS; z <= TreeUtils.TRUNK_RADIUS; z++) {
+				final int ds = x * x + z * z;
+
+				if (ds < TreeUtils.TRUNK_RADIUS_SQUARED) {
+					final int top = TreeUtils.MAX_TRUNK_HEIGHT - (int) Math.round(Math.sqrt(ds));
+
+					for (int y = -originY; y <= top; y++) {
+						result.add(RelativePos.relativePos(x, y, z));
+					}
+				}
+			}
+		}
+
+		final Random rand = new Random(seed);
+
+		for (int i = 0; i < branchCount; i++) {
+			int x = 0;
+			int y = TreeUtils.MAX_TRUNK_HEIGHT / 2 + rand.nextInt(TreeUtils.MAX_TRUNK_HEIGHT / 2);
+			int z = 0;
+			final int dx = rand.nextInt(3) - 1;
+			final int dz = dx == 0 ? (rand.nextBoolean() ? 1 : -1) : rand.nextInt(3) - 1;
+
+			for (int j = 0; j < 40; j++) {
+				x += rand.nextInt(4) == 0 ? 0 : dx;
+				z += rand.nextInt(4) == 0 ? 0 : dz;
+				y += rand.nextInt(6) == 0 ? 1 : 0;
+
+				if (x * x + z * z > TreeUtils.RADIUS * TreeUtils.RADIUS) {
+					break;
+				}
+
+				result.add(RelativePos.relativePos(x, y, z));
+			}
+		}
+
+		return result.toIntArray();
+	}
+
+	/** Mix of positions in and around the given tree, shuffled */
+	public static int[] probes(int[] logs, long seed, int count) {
+		final Random rand = new Random(seed);
+		final int[] result = new int[count];
+
+		for (int i = 0; i < count; i++) {
+			final int p = logs[rand.nextInt(logs.length)];
+			result[i] = RelativePos.relativePos(RelativePos.rx(p) + rand.nextInt(3) - 1, RelativePos.ry(p), RelativePos.rz(p) + rand.nextInt(3) - 1);
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * Grows branches from 64 points on the trunk surface per invocation.
+ * World and logs are reset before each invocation so every run sees the same tree.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BranchBuilderBenchmark {
+	private static final int STARTS = 64;
+
+	private int[] trunk;
+	private final int[] starts = new int[STARTS];
+	private MemoryTreeWorld world;
+	private LogTracker logs;
+	private BranchBuilder branches;
+	private final BlockPos.Mutable mPos = new BlockPos.Mutable();
+	private Random rand;
+
+	@Setup(Level.Trial)
+	public void setupTrial() {
+		MemoryTreeWorld.bootstrap();
+		trunk = BenchTrees.logs(42, 0);
+		world = new MemoryTreeWorld(BenchTrees.ORIGIN.getY());
+		logs = new LogTracker(BenchTrees.ORIGIN);
+		branches = new BranchBuilder(BenchTrees.ORIGIN);
+
+		final Random r = new Random(7);
+
+		for (int i = 0; i < STARTS; i++) {
+			final int y = TreeUtils.MAX_TRUNK_HEIGHT / 2 + r.nextInt(TreeUtils.MAX_TRUNK_HEIGHT / 2 - 4);
+
+			switch (r.nextInt(4)) {
+			case 0:
+				starts[i] = RelativePos.relativePos(TreeUtils.TRUNK_RADIUS, y, 0);
+				break;
+			case 1:
+				starts[i] = RelativePos.relativePos(-TreeUtils.TRUNK_RADIUS, y, 0);
+				break;
+			case 2:
+				starts[i] = RelativePos.relativePos(0, y, TreeUtils.TRUNK_RADIUS);
+				break;
+			default:
+				starts[i] = RelativePos.relativePos(0, y, -TreeUtils.TRUNK_RADIUS);
+				break;
+			}
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void setupInvocation() {
+		world.reset();
+		logs.fromArray(trunk);
+		branches.clear();
+		rand = new Random(11);
+	}
+
+	@Benchmark
+	public int placeBranches() {
+		branches.placeCount = 0;
+
+		for (final int start : starts) {
+			branches.placeBranch(world, mPos, logs, rand, start, 4);
+		}
+
+		return branches.placeCount;
+	}
+}
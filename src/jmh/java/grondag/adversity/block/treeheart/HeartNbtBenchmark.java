@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtIo;
+
+/**
+ * Heart tree state to tag and back, with and without binary serialization.
+ * The heart never gets a world, so only tree state is exercised.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeartNbtBenchmark {
+	@Param({"50", "400"})
+	public int branchCount;
+
+	/** When false logs change between saves, defeating the encoded log cache */
+	@Param({"true", "false"})
+	public boolean unchanged;
+
+	private DoomHeartBlockEntity source;
+	private DoomHeartBlockEntity target;
+	private CompoundTag saved;
+	private byte[] savedBytes;
+	private int toggle;
+
+	@Setup
+	public void setup() throws IOException {
+		source = heart();
+		target = heart();
+
+		final int[] logs = BenchTrees.logs(42, branchCount);
+		source.logs.fromArray(logs);
+
+		final Random rand = new Random(7);
+
+		for (int i = 0; i < 256; i++) {
+			source.branches.enqueue(logs[rand.nextInt(logs.length)]);
+			source.troll.enqueue(logs[rand.nextInt(logs.length)]);
+		}
+
+		saved = new CompoundTag();
+		source.writeTree(saved);
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		NbtIo.write(saved, new DataOutputStream(bytes));
+		savedBytes = bytes.toByteArray();
+	}
+
+	private static DoomHeartBlockEntity heart() {
+		final DoomHeartBlockEntity result = new DoomHeartBlockEntity(null);
+		result.setPos(BenchTrees.ORIGIN);
+		return result;
+	}
+
+	private void touch() {
+		if (!unchanged) {
+			// add and remove a position far above the tree
+			final int p = RelativePos.relativePos(0, 200, (toggle++ & 1));
+			source.logs.add(p);
+			source.logs.remove(p);
+		}
+	}
+
+	@Benchmark
+	public CompoundTag write() {
+		touch();
+		final CompoundTag tag = new CompoundTag();
+		source.writeTree(tag);
+		return tag;
+	}
+
+	@Benchmark
+	public DoomHeartBlockEntity read() {
+		target.readTree(saved);
+		return target;
+	}
+
+	/** Roughly what a chunk save and reload costs for the heart */
+	@Benchmark
+	public DoomHeartBlockEntity roundTripBinary() throws IOException {
+		touch();
+		final CompoundTag tag = new CompoundTag();
+		source.writeTree(tag);
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(savedBytes.length);
+		NbtIo.write(tag, new DataOutputStream(bytes));
+
+		target.readTree(NbtIo.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+		return target;
+	}
+}
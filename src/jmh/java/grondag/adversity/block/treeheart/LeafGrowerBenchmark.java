@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.util.math.BlockPos;
+
+/** Leaf clusters around branch logs. Writes are queued then discarded so the world never changes. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LeafGrowerBenchmark {
+	private static final int COUNT = 64;
+
+	private MemoryTreeWorld world;
+	private LogTracker logs;
+	private final long[] branchPositions = new long[COUNT];
+	private final SectionWriter writer = new SectionWriter();
+	private final BlockPos.Mutable mPos = new BlockPos.Mutable();
+	private final Random rand = new Random(11);
+
+	@Setup
+	public void setup() {
+		MemoryTreeWorld.bootstrap();
+		world = new MemoryTreeWorld(BenchTrees.ORIGIN.getY());
+		logs = new LogTracker(BenchTrees.ORIGIN);
+		logs.fromArray(BenchTrees.logs(42, 400));
+
+		final BlockPos.Mutable pos = new BlockPos.Mutable();
+		final Random r = new Random(7);
+		int i = 0;
+
+		while (i < COUNT) {
+			final int p = logs.randomBranch(r);
+
+			if (p == Integer.MIN_VALUE) {
+				break;
+			}
+
+			branchPositions[i++] = RelativePos.set(pos, BenchTrees.ORIGIN, p).asLong();
+		}
+	}
+
+	@Benchmark
+	public int addLeaves() {
+		int result = 0;
+
+		for (final long pos : branchPositions) {
+			result += LeafGrower.addLeaves(world, writer, BenchTrees.ORIGIN, logs, pos, mPos, rand);
+		}
+
+		writer.clear();
+		return result;
+	}
+}
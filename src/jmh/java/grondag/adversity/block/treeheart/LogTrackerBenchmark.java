@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import java.util.concurrent.TimeUnit;
+
+import it.unimi.dsi.fastutil.ints.IntIterator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogTrackerBenchmark {
+	@Param({"50", "400"})
+	public int branchCount;
+
+	private int[] logs;
+	private int[] probes;
+	private LogTracker tracker;
+
+	@Setup
+	public void setup() {
+		logs = BenchTrees.logs(42, branchCount);
+		probes = BenchTrees.probes(logs, 7, 4096);
+		tracker = new LogTracker(BenchTrees.ORIGIN);
+		tracker.fromArray(logs);
+	}
+
+	/** 4096 probes, roughly the mix seen by isCrowded and clearAround */
+	@Benchmark
+	public void contains(Blackhole bh) {
+		final LogTracker tracker = this.tracker;
+
+		for (final int p : probes) {
+			bh.consume(tracker.contains(p));
+		}
+	}
+
+	/** Whole-tree load, same as restoring a heart */
+	@Benchmark
+	public LogTracker add() {
+		final LogTracker result = new LogTracker(BenchTrees.ORIGIN);
+
+		for (final int p : logs) {
+			result.add(p);
+		}
+
+		return result;
+	}
+
+	@Benchmark
+	public int iterate() {
+		int result = 0;
+		final IntIterator it = tracker.iterator();
+
+		while (it.hasNext()) {
+			result += it.nextInt();
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.entity.Entity;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.util.PacketByteBuf;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.Heightmap.Type;
+
+import grondag.adversity.packet.DoomS2C;
+import grondag.fermion.position.PackedBlockPosList;
+
+/**
+ * Tree world stand-in backed by a hash map. Everything below ground level
+ * is stone and everything else is air until written. All chunks are loaded,
+ * there are no entities and packets are only measured.
+ */
+public class MemoryTreeWorld implements TreeWorld {
+	private static boolean bootstrapped = false;
+
+	/** Block states need vanilla registries - call before touching any BlockState */
+	public static synchronized void bootstrap() {
+		if (!bootstrapped) {
+			Bootstrap.initialize();
+			bootstrapped = true;
+		}
+	}
+
+	private final Long2ObjectOpenHashMap<BlockState> states = new Long2ObjectOpenHashMap<>();
+	private final BlockState air = Blocks.AIR.getDefaultState();
+	private final BlockState ground = Blocks.STONE.getDefaultState();
+	private final int groundY;
+
+	long time = 0;
+	int writeCount = 0;
+	int packetCount = 0;
+	long packetBytes = 0;
+	int spawnAttempts = 0;
+
+	/** Blocks below groundY are stone */
+	public MemoryTreeWorld(int groundY) {
+		this.groundY = groundY;
+	}
+
+	public void reset() {
+		states.clear();
+		time = 0;
+		writeCount = 0;
+		packetCount = 0;
+		packetBytes = 0;
+		spawnAttempts = 0;
+	}
+
+	@Override
+	public boolean isLoaded(BlockPos pos) {
+		final int y = pos.getY();
+		return y >= 0 && y < 256;
+	}
+
+	@Override
+	public void setBlockState(BlockPos pos, BlockState state, int flags) {
+		states.put(pos.asLong(), state);
+		++writeCount;
+	}
+
+	@Override
+	public long getTime() {
+		return time;
+	}
+
+	@Override
+	@Nullable
+	public ChunkSnapshot snapshot(int chunkX, int chunkZ, int minY, int maxY, @Nullable Type heightType) {
+		return ChunkSnapshot.copyOf(this, chunkX, chunkZ, minY, maxY, time, heightType);
+	}
+
+	@Override
+	public void collectDoomable(int x, int y, int z, int height, List<Entity> targets) {
+		// no entities
+	}
+
+	@Override
+	public void sendReports(PackedBlockPosList reports) {
+		final PacketByteBuf buf = DoomS2C.encode(reports);
+		++packetCount;
+		packetBytes += buf.readableBytes();
+		buf.release();
+	}
+
+	@Override
+	public void spawnMobs(DoomHeartBlockEntity heart) {
+		++spawnAttempts;
+	}
+
+	@Override
+	public BlockState getBlockState(BlockPos pos) {
+		final BlockState result = states.get(pos.asLong());
+
+		if (result != null) {
+			return result;
+		}
+
+		final int y = pos.getY();
+		return y >= 0 && y < groundY ? ground : air;
+	}
+
+	@Override
+	public FluidState getFluidState(BlockPos pos) {
+		return getBlockState(pos).getFluidState();
+	}
+
+	@Override
+	@Nullable
+	public BlockEntity getBlockEntity(BlockPos pos) {
+		return null;
+	}
+}
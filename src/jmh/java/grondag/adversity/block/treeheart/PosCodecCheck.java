@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package grondag.adversity.block.treeheart;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Round-trip checks for {@link PosCodec}. Run through {@code grondag.adversity.CodecCheck}.
+ */
+public enum PosCodecCheck {
+	;
+
+	/** Returns the number of failed cases */
+	public static int run() {
+		int failures = 0;
+		final Random rand = new Random(1);
+
+		failures += check("empty", new int[0]);
+		failures += check("single", new int[] {RelativePos.relativePos(0, 0, 0)});
+		failures += check("extremes", new int[] {
+			RelativePos.relativePos(-255, -255, -255),
+			RelativePos.relativePos(255, 255, 255),
+			RelativePos.relativePos(-255, 255, -255),
+			RelativePos.relativePos(255, -255, 255)
+		});
+
+		// full column from the lowest to the highest y - one run
+		final int[] column = new int[511];
+
+		for (int y = -255; y <= 255; y++) {
+			column[y + 255] = RelativePos.relativePos(3, y, -7);
+		}
+
+		failures += check("full column", column);
+
+		// columns side by side must not merge across x or z
+		final int[] adjacent = new int[64];
+
+		for (int i = 0; i < 64; i++) {
+			adjacent[i] = RelativePos.relativePos(i & 3, (i >> 2) & 7, i >> 5);
+		}
+
+		failures += check("adjacent columns", adjacent);
+
+		final int[] duplicates = new int[100];
+
+		for (int i = 0; i < duplicates.length; i++) {
+			duplicates[i] = RelativePos.relativePos(rand.nextInt(3), rand.nextInt(3), rand.nextInt(3));
+		}
+
+		failures += check("duplicates", duplicates);
+
+		final int[] scattered = new int[5000];
+
+		for (int i = 0; i < scattered.length; i++) {
+			scattered[i] = RelativePos.relativePos(rand.nextInt(511) - 255, rand.nextInt(511) - 255, rand.nextInt(511) - 255);
+		}
+
+		failures += check("scattered", scattered);
+		failures += check("bench tree", BenchTrees.logs(1, 40));
+		return failures;
+	}
+
+	private static int check(String name, int[] positions) {
+		final int[] expected = positions.clone();
+		Arrays.sort(expected);
+
+		int failures = 0;
+
+		// both encoders rearrange their input
+		final int[] plain = PosCodec.decode(PosCodec.encode(positions.clone()));
+		Arrays.sort(plain);
+
+		if (!Arrays.equals(expected, plain)) {
+			System.out.println("FAIL PosCodec " + name);
+			failures++;
+		}
+
+		final int[] columns = PosCodec.decodeColumns(PosCodec.encodeColumns(positions.clone()));
+		Arrays.sort(columns);
+
+		if (!Arrays.equals(expected, columns)) {
+			System.out.println("FAIL PosCodec columns " + name);
+			failures++;
+		}
+
+		return failures;
+	}
+}
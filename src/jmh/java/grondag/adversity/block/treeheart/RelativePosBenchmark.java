@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RelativePosBenchmark {
+	private static final int COUNT = 1024;
+
+	private final int[] dx = new int[COUNT];
+	private final int[] dy = new int[COUNT];
+	private final int[] dz = new int[COUNT];
+	private final int[] encoded = new int[COUNT];
+
+	@Setup
+	public void setup() {
+		final Random rand = new Random(42);
+
+		for (int i = 0; i < COUNT; i++) {
+			dx[i] = rand.nextInt(97) - 48;
+			dy[i] = rand.nextInt(160) - 64;
+			dz[i] = rand.nextInt(97) - 48;
+			encoded[i] = RelativePos.relativePos(dx[i], dy[i], dz[i]);
+		}
+	}
+
+	@Benchmark
+	public void encode(Blackhole bh) {
+		for (int i = 0; i < COUNT; i++) {
+			bh.consume(RelativePos.relativePos(dx[i], dy[i], dz[i]));
+		}
+	}
+
+	@Benchmark
+	public void decode(Blackhole bh) {
+		for (int i = 0; i < COUNT; i++) {
+			final int p = encoded[i];
+			bh.consume(RelativePos.rx(p) + RelativePos.ry(p) + RelativePos.rz(p));
+		}
+	}
+
+	@Benchmark
+	public void squaredDistance(Blackhole bh) {
+		for (int i = 0; i < COUNT; i++) {
+			bh.consume(RelativePos.squaredDistance(encoded[i]));
+		}
+	}
+}
@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import net.minecraft.util.math.BlockPos;
+
+import grondag.adversity.registry.AdversityBlocks;
+
+/**
+ * Grows a doom tree from sapling trunk design to finished canopy and a number
+ * of full troll sweeps against an in-memory world, then reports the cost.
+ * The sapling's ritual (gloom, lightning) only waits on timers and isn't simulated.<p>
+ *
+ * By default runs deterministically: growth randomness comes from the seed,
+ * tree planning runs on the calling thread and hearts get no time slice, so
+ * every job does only its guaranteed minimum per tick. Pass --async and
+ * --slice-ms to see behavior closer to a live server.<p>
+ *
+ * Options: --seed n, --sweeps n, --max-ticks n, --slice-ms n, --async,
+ * --json path, --max-ms n (exit 1 if growth takes longer - for CI).
+ */
+public class TreeGrowthHarness {
+	private long seed = 1;
+	private int sweeps = 1;
+	private long maxTicks = 2_000_000;
+	private double sliceMs = 0;
+	private boolean async = false;
+	private String jsonPath = null;
+	private double maxMs = Double.MAX_VALUE;
+
+	public static void main(String[] args) throws IOException {
+		final TreeGrowthHarness harness = new TreeGrowthHarness();
+		harness.parse(args);
+		System.exit(harness.run());
+	}
+
+	private void parse(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "--seed":
+				seed = Long.parseLong(args[++i]);
+				break;
+			case "--sweeps":
+				sweeps = Integer.parseInt(args[++i]);
+				break;
+			case "--max-ticks":
+				maxTicks = Long.parseLong(args[++i]);
+				break;
+			case "--slice-ms":
+				sliceMs = Double.parseDouble(args[++i]);
+				break;
+			case "--async":
+				async = true;
+				break;
+			case "--json":
+				jsonPath = args[++i];
+				break;
+			case "--max-ms":
+				maxMs = Double.parseDouble(args[++i]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+	}
+
+	private int run() throws IOException {
+		if (!async && System.getProperty("adversity.treeWorkers") == null) {
+			// must happen before TreeWorkers is loaded
+			System.setProperty("adversity.treeWorkers", "0");
+		}
+
+		MemoryTreeWorld.bootstrap();
+
+		final BlockPos origin = BenchTrees.ORIGIN;
+		final MemoryTreeWorld world = new MemoryTreeWorld(origin.getY());
+		final long sliceNanos = (long) (sliceMs * 1_000_000);
+		final Meter meter = new Meter();
+
+		// sapling trunk design
+		final TrunkDesigner designer = new TrunkDesigner(origin, world);
+		long saplingTicks = 0;
+
+		meter.start();
+
+		while (!designer.designTrunk()) {
+			++saplingTicks;
+			++world.time;
+			Thread.yield();
+		}
+
+		++saplingTicks;
+		final LongArrayList logs = designer.blocks();
+		meter.stop();
+		final long saplingNanos = meter.nanos;
+
+		if (logs == null || logs.isEmpty()) {
+			System.err.println("Trunk design failed");
+			return 2;
+		}
+
+		// same hand-off as DoomSaplingBlockEntity.doDone
+		final int y = origin.getY();
+		logs.sort((l0, l1) -> Integer.compare(Math.abs(BlockPos.unpackLongY(l0) - y), Math.abs(BlockPos.unpackLongY(l1) - y)));
+
+		world.setBlockState(origin, AdversityBlocks.DOOM_HEART_BLOCK.getDefaultState(), 3);
+		final DoomHeartBlockEntity heart = new DoomHeartBlockEntity(null);
+		heart.setPos(origin);
+		heart.setTreeWorld(world);
+		heart.random.setSeed(seed);
+		heart.setTemplate(logs.toLongArray());
+
+		// growth and spread
+		meter.reset();
+		long ticks = 0;
+		long canopyTick = -1;
+		int completedSweeps = 0;
+		int lastIndex = heart.troll.index;
+
+		while (ticks < maxTicks) {
+			++world.time;
+			++ticks;
+
+			meter.start();
+			heart.tickTree(sliceNanos);
+			meter.stop();
+
+			final int index = heart.troll.index;
+
+			if (index < lastIndex) {
+				++completedSweeps;
+			}
+
+			lastIndex = index;
+
+			if (canopyTick == -1 && heart.job == null && heart.builds.isEmpty() && heart.branches.isEmpty() && !heart.logs.hasBranches()) {
+				canopyTick = ticks;
+			}
+
+			if (canopyTick != -1 && completedSweeps >= sweeps) {
+				break;
+			}
+		}
+
+		final boolean finished = canopyTick != -1 && completedSweeps >= sweeps;
+		final double growthMs = meter.nanos / 1_000_000.0;
+
+		final String[][] results = {
+			{"seed", Long.toString(seed)},
+			{"finished", Boolean.toString(finished)},
+			{"saplingTicks", Long.toString(saplingTicks)},
+			{"saplingMs", format(saplingNanos / 1_000_000.0)},
+			{"ticks", Long.toString(ticks)},
+			{"canopyTick", Long.toString(canopyTick)},
+			{"sweeps", Integer.toString(completedSweeps)},
+			{"growthMs", format(growthMs)},
+			{"nanosPerTick", format(ticks == 0 ? 0 : (double) meter.nanos / ticks)},
+			{"maxTickNanos", Long.toString(meter.maxNanos)},
+			{"blockWrites", Integer.toString(world.writeCount)},
+			{"allocatedBytes", Long.toString(meter.allocated)},
+			{"allocatedBytesPerTick", format(ticks == 0 ? 0 : (double) meter.allocated / ticks)},
+			{"doomPackets", Integer.toString(world.packetCount)},
+			{"doomBytes", Long.toString(world.packetBytes)},
+			{"logs", Integer.toString(heart.logs.size())},
+			{"spawnAttempts", Integer.toString(world.spawnAttempts)}
+		};
+
+		for (final String[] r : results) {
+			System.out.println(r[0] + "=" + r[1]);
+		}
+
+		if (jsonPath != null) {
+			try (PrintWriter out = new PrintWriter(jsonPath, "UTF-8")) {
+				out.println("{");
+
+				for (int i = 0; i < results.length; i++) {
+					final String v = results[i][1];
+					final boolean quote = !v.matches("-?[0-9.]+|true|false");
+					out.println("  \"" + results[i][0] + "\": " + (quote ? "\"" + v + "\"" : v) + (i < results.length - 1 ? "," : ""));
+				}
+
+				out.println("}");
+			}
+		}
+
+		if (!finished) {
+			System.err.println("Tree did not finish within " + maxTicks + " ticks");
+			return 3;
+		}
+
+		if (growthMs > maxMs) {
+			System.err.println("Growth took " + format(growthMs) + " ms, limit is " + format(maxMs));
+			return 1;
+		}
+
+		return 0;
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+
+	/** Wall time and allocation on the calling thread. Allocation is -1 if the JVM can't report it. */
+	private static class Meter {
+		private final com.sun.management.ThreadMXBean threads;
+		private final long threadId = Thread.currentThread().getId();
+
+		long nanos;
+		long maxNanos;
+		long allocated;
+
+		private long startNanos;
+		private long startAllocated;
+
+		Meter() {
+			final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+			if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+				threads = (com.sun.management.ThreadMXBean) bean;
+				threads.setThreadAllocatedMemoryEnabled(true);
+			} else {
+				threads = null;
+				allocated = -1;
+			}
+		}
+
+		void reset() {
+			nanos = 0;
+			maxNanos = 0;
+			allocated = threads == null ? -1 : 0;
+		}
+
+		void start() {
+			if (threads != null) {
+				startAllocated = threads.getThreadAllocatedBytes(threadId);
+			}
+
+			startNanos = System.nanoTime();
+		}
+
+		void stop() {
+			final long elapsed = System.nanoTime() - startNanos;
+			nanos += elapsed;
+
+			if (elapsed > maxNanos) {
+				maxNanos = elapsed;
+			}
+
+			if (threads != null) {
+				allocated += threads.getThreadAllocatedBytes(threadId) - startAllocated;
+			}
+		}
+	}
+}
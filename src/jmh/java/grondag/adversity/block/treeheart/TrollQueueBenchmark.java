@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Simulates a reportBreak storm: every broken position is queued,
+ * some of them twice, then the whole queue is drained nearest first.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrollQueueBenchmark {
+	@Param({"1000", "10000"})
+	public int stormSize;
+
+	private int[] storm;
+	private Troll troll;
+
+	@Setup
+	public void setup() {
+		final int[] logs = BenchTrees.logs(42, 400);
+		final Random rand = new Random(7);
+		storm = new int[stormSize];
+
+		for (int i = 0; i < stormSize; i++) {
+			// about 1 in 8 repeats an earlier break
+			storm[i] = i > 0 && rand.nextInt(8) == 0 ? storm[rand.nextInt(i)] : logs[rand.nextInt(logs.length)];
+		}
+
+		troll = new Troll(BenchTrees.ORIGIN);
+	}
+
+	@Benchmark
+	public int enqueueDequeue() {
+		final Troll troll = this.troll;
+
+		for (final int p : storm) {
+			troll.enqueue(p);
+		}
+
+		int result = 0;
+
+		while (!troll.isEmpty()) {
+			result += troll.dequeueInt();
+		}
+
+		return result;
+	}
+
+	@Benchmark
+	public int restore() {
+		troll.fromQueue(0, 0, storm);
+		final int result = troll.size();
+		troll.clear();
+		return result;
+	}
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package grondag.adversity.packet;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import io.netty.buffer.Unpooled;
+
+import net.minecraft.util.PacketByteBuf;
+
+import grondag.fermion.position.PackedBlockPos;
+import grondag.fermion.position.PackedBlockPosList;
+
+/**
+ * Round-trip checks for the version 2 {@link DoomS2C} payload. Run through
+ * {@code grondag.adversity.CodecCheck}. Duplicate reports are sent once, so
+ * decoded reports are compared with the distinct input.
+ */
+public enum DoomS2CCheck {
+	;
+
+	/** Returns the number of failed cases */
+	public static int run() {
+		int failures = 0;
+		final Random rand = new Random(1);
+
+		failures += check("empty", new PackedBlockPosList());
+
+		// whole column at the bottom of a section is one run of 16
+		final PackedBlockPosList bottom = new PackedBlockPosList();
+
+		for (int y = 0; y < 16; y++) {
+			bottom.add(PackedBlockPos.pack(5, y, 9, DoomS2C.MIASMA));
+		}
+
+		failures += check("section bottom", bottom);
+
+		// a column crossing sections splits at the boundary
+		final PackedBlockPosList top = new PackedBlockPosList();
+
+		for (int y = 12; y < 40; y++) {
+			top.add(PackedBlockPos.pack(-17, y, 31, DoomS2C.DOOM));
+		}
+
+		top.add(PackedBlockPos.pack(0, 255, 0, DoomS2C.ICHOR));
+		top.add(PackedBlockPos.pack(0, 254, 0, DoomS2C.ICHOR));
+		failures += check("section top", top);
+
+		// type changes part way up a column end the run
+		final PackedBlockPosList mixed = new PackedBlockPosList();
+
+		for (int y = 64; y < 80; y++) {
+			mixed.add(PackedBlockPos.pack(-1, y, -1, y < 70 ? DoomS2C.MIASMA : y < 75 ? DoomS2C.DOOM : DoomS2C.ICHOR));
+			mixed.add(PackedBlockPos.pack(-1, y, -1, DoomS2C.ICHOR));
+		}
+
+		failures += check("mixed types", mixed);
+
+		final PackedBlockPosList duplicates = new PackedBlockPosList();
+
+		for (int i = 0; i < 500; i++) {
+			duplicates.add(PackedBlockPos.pack(rand.nextInt(4), 100 + rand.nextInt(4), rand.nextInt(4), rand.nextInt(3)));
+		}
+
+		failures += check("duplicates", duplicates);
+
+		// every position and type in one section, with no runs - most entries a section can hold
+		final PackedBlockPosList full = new PackedBlockPosList();
+
+		for (int type = 0; type < 3; type++) {
+			for (int y = 0; y < 16; y++) {
+				for (int z = 0; z < 16; z++) {
+					for (int x = 0; x < 16; x++) {
+						if (((x + y + z + type) & 1) == 0) {
+							full.add(PackedBlockPos.pack(32 + x, 48 + y, -48 + z, type));
+						}
+					}
+				}
+			}
+		}
+
+		failures += check("full section", full);
+
+		final PackedBlockPosList scattered = new PackedBlockPosList();
+
+		for (int i = 0; i < 5000; i++) {
+			scattered.add(PackedBlockPos.pack(rand.nextInt(200) - 100, rand.nextInt(256), rand.nextInt(200) - 100, rand.nextInt(3)));
+		}
+
+		failures += check("scattered", scattered);
+		return failures;
+	}
+
+	private static int check(String name, PackedBlockPosList reports) {
+		final LongOpenHashSet distinct = new LongOpenHashSet();
+
+		for (int i = 0; i < reports.size(); i++) {
+			distinct.add(reports.get(i));
+		}
+
+		final long[] expected = distinct.toLongArray();
+		Arrays.sort(expected);
+
+		final PacketByteBuf buf = DoomS2C.encode(reports, new PacketByteBuf(Unpooled.buffer()));
+		final PackedBlockPosList decoded = DoomS2C.decode(buf);
+		final long[] actual = new long[decoded.size()];
+
+		for (int i = 0; i < actual.length; i++) {
+			actual[i] = decoded.get(i);
+		}
+
+		Arrays.sort(actual);
+
+		if (!Arrays.equals(expected, actual) || buf.isReadable()) {
+			System.out.println("FAIL DoomS2C " + name);
+			return 1;
+		}
+
+		return 0;
+	}
+}
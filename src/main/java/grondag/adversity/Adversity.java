@@ -28,6 +28,11 @@ import org.apache.logging.log4j.Logger;
 
 import grondag.adversity.adversary.Adversary;
 import grondag.adversity.block.treeheart.DoomTreeTracker;
+import grondag.adversity.block.treeheart.StateTable;
+import grondag.adversity.block.treeheart.TreeScheduler;
+import grondag.adversity.block.treeheart.TreeStats;
+import grondag.adversity.packet.EffectsS2C;
+import grondag.adversity.packet.PlayerIndex;
 import grondag.adversity.registry.AdversityBlocks;
 import grondag.adversity.registry.AdversityEffects;
 import grondag.adversity.registry.AdversityEntities;
@@ -44,6 +49,7 @@ import grondag.fermion.simulator.Simulator;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.event.server.ServerStartCallback;
 import net.fabricmc.fabric.api.event.server.ServerStopCallback;
+import net.fabricmc.fabric.api.event.server.ServerTickCallback;
 import net.fabricmc.fabric.api.loot.v1.event.LootTableLoadingCallback;
 import net.fabricmc.fabric.api.resource.ResourceManagerHelper;
 import net.minecraft.entity.player.PlayerEntity;
@@ -92,10 +98,17 @@ public class Adversity implements ModInitializer {
 		AdversityEffects.values();
 		AdversityEntities.values();
 
-		ServerStopCallback.EVENT.register(s -> DoomTreeTracker.clear());
+		ServerStartCallback.EVENT.register(DoomTreeTracker::load);
+		ServerTickCallback.EVENT.register(TreeScheduler::onServerTick);
+		ServerTickCallback.EVENT.register(TreeStats::onServerTick);
+		ServerTickCallback.EVENT.register(EffectsS2C::flush);
+		TreeStats.registerCommands();
 		ServerStartCallback.EVENT.register(AdversityRecipes.HELPER::init);
 		ServerStopCallback.EVENT.register(AdversityRecipes.HELPER::stop);
+		ServerStopCallback.EVENT.register(EffectsS2C::clear);
+		ServerStopCallback.EVENT.register(PlayerIndex::clear);
 		ResourceManagerHelper.get(ResourceType.SERVER_DATA).registerReloadListener(AdversityRecipes.HELPER);
+		StateTable.register();
 		LootTableLoadingCallback.EVENT.register(AdversityLoot::init);
 
 		Simulator.register(Adversary.ADVERSARY_TAG, Adversary::new);
@@ -42,6 +42,7 @@ import grondag.adversity.model.LogModel;
 import grondag.adversity.model.TerminalModel;
 import grondag.adversity.packet.AlchemyCraftS2C;
 import grondag.adversity.packet.DoomS2C;
+import grondag.adversity.packet.EffectsS2C;
 import grondag.adversity.packet.WalkerPulseS2C;
 import grondag.adversity.packet.XpDrainS2C;
 import grondag.adversity.particle.BasinParticle.BasinParticleFactory;
@@ -96,9 +97,11 @@ public class AdversityClient implements ClientModInitializer {
 		REGISTRAR.simpleRandomModel("warding_essence_block", SpriteAtlasTexture.BLOCK_ATLAS_TEX, "block/warding_essence_block");
 
 		ClientSidePacketRegistry.INSTANCE.register(AlchemyCraftS2C.IDENTIFIER, AlchemyCraftS2C::handle);
-		ClientSidePacketRegistry.INSTANCE.register(DoomS2C.IDENTIFIER, DoomS2C::handle);
+		ClientSidePacketRegistry.INSTANCE.register(DoomS2C.IDENTIFIER, DoomS2C::handleLegacy);
+		ClientSidePacketRegistry.INSTANCE.register(DoomS2C.IDENTIFIER_V2, DoomS2C::handle);
 		ClientSidePacketRegistry.INSTANCE.register(XpDrainS2C.IDENTIFIER, XpDrainS2C::handle);
 		ClientSidePacketRegistry.INSTANCE.register(WalkerPulseS2C.IDENTIFIER, WalkerPulseS2C::handle);
+		ClientSidePacketRegistry.INSTANCE.register(EffectsS2C.IDENTIFIER, EffectsS2C::handle);
 
 		REGISTRAR.fluidRenderHandler(AdversityFluids.ICHOR, AdversityFluids.FLOWING_ICHOR, AdversityFluids.ICHOR_COLOR, "block/water_still", "block/water_flow");
 
@@ -39,16 +39,31 @@ public enum AdversityConfig {
 
 	public static final boolean ADVERSARY_ACTIVE;
 	public static final int MAX_ACTIVE_TREES;
+	public static final long TREE_TICK_BUDGET_NANOS;
+	public static final int TREE_STATS_INTERVAL_TICKS;
+	public static final float PARALLEL_EXPLOSION_POWER;
 
 	private static class Config {
 		@Comment("Does the mod try to kill you?")
 		boolean active_adversary = true;
 
-		@Comment("How many doom trees can be actively growing at one time? 1-3")
+		@Comment("How many doom trees can be actively growing at one time? 1-64")
 		int max_active_trees = 1;
 
+		@Comment("Most milliseconds all doom trees together may use per server tick.\nThe actual budget shrinks as server tick time approaches 50ms. 1-40")
+		int tree_tick_budget_ms = 10;
+
+		@Comment("Seconds between doom tree stats written to the adversity folder in the world save.\n0 disables. 0-86400")
+		int tree_stats_interval_seconds = 300;
+
+		@Comment("Explosions at least this powerful cast their rays on several cores.\nWalker pulses are power 2. 0 disables. 0-1000")
+		int parallel_explosion_power = 8;
+
 		void validate() {
-			max_active_trees = MathHelper.clamp(max_active_trees, 1, 3);
+			max_active_trees = MathHelper.clamp(max_active_trees, 1, 64);
+			tree_tick_budget_ms = MathHelper.clamp(tree_tick_budget_ms, 1, 40);
+			tree_stats_interval_seconds = MathHelper.clamp(tree_stats_interval_seconds, 0, 86400);
+			parallel_explosion_power = MathHelper.clamp(parallel_explosion_power, 0, 1000);
 		}
 	}
 
@@ -73,6 +88,9 @@ public enum AdversityConfig {
 
 		ADVERSARY_ACTIVE = config.active_adversary;
 		MAX_ACTIVE_TREES = config.max_active_trees;
+		TREE_TICK_BUDGET_NANOS = config.tree_tick_budget_ms * 1_000_000L;
+		TREE_STATS_INTERVAL_TICKS = config.tree_stats_interval_seconds * 20;
+		PARALLEL_EXPLOSION_POWER = config.parallel_explosion_power == 0 ? Float.MAX_VALUE : config.parallel_explosion_power;
 
 		try {
 			final String result = jank.toJson(config).toJson(true, true, 0);
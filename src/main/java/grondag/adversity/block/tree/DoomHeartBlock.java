@@ -22,6 +22,7 @@
 package grondag.adversity.block.tree;
 
 import grondag.adversity.block.treeheart.DoomHeartBlockEntity;
+import grondag.adversity.block.treeheart.DoomTreeTracker;
 import grondag.adversity.registry.AdversityTags;
 import net.fabricmc.fabric.api.tools.FabricToolTags;
 import net.minecraft.block.Block;
@@ -35,6 +36,7 @@ import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.item.ItemStack;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.BlockView;
+import net.minecraft.world.World;
 
 public class DoomHeartBlock extends BlockWithEntity {
 
@@ -62,6 +64,15 @@ public class DoomHeartBlock extends BlockWithEntity {
 		return super.calcBlockBreakingDelta(blockState, player, blockView, pos);
 	}
 
+	@Override
+	public void onBlockRemoved(BlockState myState, World world, BlockPos blockPos, BlockState newState, boolean someFlag) {
+		if (!world.isClient && newState.getBlock() != this) {
+			DoomTreeTracker.untrack(world, blockPos);
+		}
+
+		super.onBlockRemoved(myState, world, blockPos, newState, someFlag);
+	}
+
 	@Override
 	public BlockRenderType getRenderType(BlockState blockState) {
 		return BlockRenderType.MODEL;
@@ -23,23 +23,21 @@ package grondag.adversity.block.treeheart;
 
 import java.util.Random;
 
-import io.netty.util.internal.ThreadLocalRandom;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.ints.IntHeapPriorityQueue;
 
 import net.minecraft.block.BlockState;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.BlockPos.Mutable;
 import net.minecraft.util.math.Direction;
-import net.minecraft.world.World;
 
 import grondag.adversity.block.tree.DoomLogBlock;
+import grondag.adversity.jfr.AdversityJfr;
+import grondag.adversity.jfr.Span;
 import grondag.adversity.registry.AdversityBlockStates;
 import grondag.adversity.registry.AdversityBlocks;
 
 /** Tracks log spaces needing placement */
-@SuppressWarnings("serial")
-class BranchBuilder extends IntHeapPriorityQueue {
+class BranchBuilder extends DistanceQueue {
 	private final int originX;
 	private final int originY;
 	private final int originZ;
@@ -47,8 +45,11 @@ class BranchBuilder extends IntHeapPriorityQueue {
 
 	int placeCount = 0;
 
+	/** Candidate positions examined, for profiling */
+	private int touched = 0;
+
 	BranchBuilder(BlockPos origin) {
-		super((i0, i1) -> Integer.compare(RelativePos.squaredDistance(i0), RelativePos.squaredDistance(i1)));
+		super(false);
 
 		originX = origin.getX();
 		originY = origin.getY();
@@ -63,18 +64,14 @@ class BranchBuilder extends IntHeapPriorityQueue {
 		super.enqueue(RelativePos.relativePos(originX, originY, originZ, pos));
 	}
 
-	@Override
-	public void enqueue(int relativePos) {
-		super.enqueue(relativePos);
-	}
-
 	void build(DoomHeartBlockEntity heart) {
 		if (isEmpty()) {
 			return;
 		}
 
+		final Span span = AdversityJfr.branchBuild();
 		final int start = dequeueInt();
-		final World world = heart.getWorld();
+		final TreeWorld world = heart.treeWorld();
 		final BlockPos.Mutable mPos = heart.mPos;
 		final BlockState currentState = world.getBlockState(RelativePos.set(mPos, originX,  originY, originZ, start));
 
@@ -83,23 +80,29 @@ class BranchBuilder extends IntHeapPriorityQueue {
 				heart.builds.enqueue(start);
 				enqueue(start);
 			}
+
+			span.finish(1, 0, 0);
 			return;
 		}
 
-		final Random rand = ThreadLocalRandom.current();
+		final Random rand = heart.random;
 		placeCount = 0;
+		touched = 1;
 		placeBranch(world, mPos, heart.logs, rand, start, 4);
 
 		if (placeCount > 0) {
 			heart.markDirty();
 			heart.resetTickCounter();
 			heart.power -= placeCount * 20;
+			heart.metrics.logsPlaced += placeCount;
 		}
+
+		span.finish(touched, placeCount, 0);
 	}
 
 	private final static BlockState LOG_STATE = AdversityBlockStates.LOG_STATE.with(DoomLogBlock.HEIGHT, DoomLogBlock.MAX_HEIGHT);
 
-	private void placeBranch(World world, BlockPos.Mutable mPos, LogTracker logs, Random rand, int startPos, int allowance) {
+	void placeBranch(TreeWorld world, BlockPos.Mutable mPos, LogTracker logs, Random rand, int startPos, int allowance) {
 		final int rx = RelativePos.rx(startPos);
 		final int ry = RelativePos.ry(startPos);
 		final int rz = RelativePos.rz(startPos);
@@ -142,20 +145,21 @@ class BranchBuilder extends IntHeapPriorityQueue {
 		}
 	}
 
-	private void setLog(World world, BlockPos.Mutable mPos, LogTracker logs, int relPos) {
+	private void setLog(TreeWorld world, BlockPos.Mutable mPos, LogTracker logs, int relPos) {
 		logs.add(relPos);
-		world.setBlockState(RelativePos.set(mPos, originX, originY, originZ, relPos), LOG_STATE);
+		world.setBlockState(RelativePos.set(mPos, originX, originY, originZ, relPos), LOG_STATE, 3);
 		final BlockState underState = world.getBlockState(mPos.setOffset(Direction.DOWN));
 
 		if(underState != AdversityBlockStates.MIASMA_STATE && underState != AdversityBlockStates.GLEAM_STATE
 				&& (underState == AdversityBlockStates.LEAF_STATE || underState.isAir() || TreeUtils.canReplace(underState))) {
 
-			world.setBlockState(mPos, AdversityBlockStates.MIASMA_STATE);
+			world.setBlockState(mPos, AdversityBlockStates.MIASMA_STATE, 3);
 		}
 	}
 
-	private void addCandidate(World world, Mutable mPos, LogTracker logs, int startPos, int x, int y, int z, IntArrayList candidates) {
+	private void addCandidate(TreeWorld world, Mutable mPos, LogTracker logs, int startPos, int x, int y, int z, IntArrayList candidates) {
 		final int p = RelativePos.relativePos(x, y, z);
+		touched++;
 
 		final int rsq = TreeUtils.canopyRadiusSquared(y);
 
@@ -177,7 +181,7 @@ class BranchBuilder extends IntHeapPriorityQueue {
 
 		mPos.set(originX + x, originY + y, originZ + z);
 
-		if (!World.isValid(mPos) || !world.isChunkLoaded(mPos)) {
+		if (!world.isLoaded(mPos)) {
 			return;
 		}
 
@@ -255,12 +259,6 @@ class BranchBuilder extends IntHeapPriorityQueue {
 		return Math.abs(RelativePos.rx(startPos) - x) + Math.abs(RelativePos.ry(startPos) - y) + Math.abs(RelativePos.rz(startPos) - z) == 1;
 	}
 
-	int[] toIntArray() {
-		final int[] result = new int[size];
-		System.arraycopy(heap, 0, result, 0, size);
-		return result;
-	}
-
 	void fromArray(int[] relativePositions) {
 		clear();
 		for (final int p : relativePositions) {
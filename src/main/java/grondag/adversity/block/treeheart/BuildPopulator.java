@@ -24,6 +24,8 @@ package grondag.adversity.block.treeheart;
 import it.unimi.dsi.fastutil.ints.IntIterator;
 
 public class BuildPopulator implements Job {
+	/** Positions always queued per tick, more if the heart has time */
+	private static final int MIN_COUNT = 64;
 
 	final IntIterator it;
 
@@ -35,7 +37,7 @@ public class BuildPopulator implements Job {
 	public Job apply(DoomHeartBlockEntity heart) {
 		final TrunkBuilder builds = heart.builds;
 
-		for (int i = 0; i < 256; i++) {
+		for (int i = 0; i < MIN_COUNT || heart.hasTime(); i++) {
 			if (it.hasNext()) {
 				builds.enqueue(it.nextInt());
 			} else {
@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.util.PackedIntegerArray;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.BlockView;
+import net.minecraft.world.Heightmap.Type;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+
+/**
+ * Immutable copy of part of a chunk that worker threads can read while the
+ * server thread keeps modifying the world. Sections are copied in bulk: the
+ * packed palette indices are cloned and only the small local palette is
+ * resolved, so the server thread never reads states one at a time.
+ * Block entities are not captured.
+ */
+class ChunkSnapshot implements BlockView {
+	private static final BlockState AIR = Blocks.AIR.getDefaultState();
+
+	final int chunkX;
+	final int chunkZ;
+	final long time;
+
+	/** Copied block states of one section, indexed y, z, x like the chunk's container */
+	private static class Section {
+		/** Palette indices or global ids - null if states holds every position */
+		private final PackedIntegerArray data;
+		/** Local palette, every position's state if data is null, or null for global ids */
+		private final BlockState[] states;
+
+		private Section(PackedIntegerArray data, BlockState[] states) {
+			this.data = data;
+			this.states = states;
+		}
+
+		private BlockState get(int index) {
+			if (data == null) {
+				return states[index];
+			}
+
+			final int i = data.get(index);
+			final BlockState result = states == null ? Block.STATE_IDS.get(i) : states[i];
+			return result == null ? AIR : result;
+		}
+	}
+
+	private final int minSection;
+	/** Null for empty sections */
+	private final Section[] sections;
+	private final int[] heights;
+
+	private ChunkSnapshot(int chunkX, int chunkZ, int minSection, Section[] sections, int[] heights, long time) {
+		this.chunkX = chunkX;
+		this.chunkZ = chunkZ;
+		this.minSection = minSection;
+		this.sections = sections;
+		this.heights = heights;
+		this.time = time;
+	}
+
+	/** Call from server thread.  Captures sections overlapping minY to maxY, inclusive. */
+	static ChunkSnapshot of(Chunk chunk, int minY, int maxY, long time) {
+		return of(chunk, minY, maxY, time, null);
+	}
+
+	/**
+	 * As above but also captures top y of the given heightmap type,
+	 * with the same meaning as {@link IWorld#getTopY(Type, int, int)}.
+	 */
+	static ChunkSnapshot of(Chunk chunk, int minY, int maxY, long time, @Nullable Type heightType) {
+		final int minSection = Math.max(0, minY >> 4);
+		final int maxSection = Math.min(15, maxY >> 4);
+		final ChunkSection[] source = chunk.getSectionArray();
+		final Section[] sections = new Section[Math.max(0, maxSection - minSection + 1)];
+
+		for (int i = minSection; i <= maxSection; i++) {
+			final ChunkSection s = source[i];
+
+			if (!ChunkSection.isEmpty(s)) {
+				sections[i - minSection] = copy(s);
+			}
+		}
+
+		int[] heights = null;
+
+		if (heightType != null) {
+			heights = new int[256];
+
+			for (int i = 0; i < 256; i++) {
+				heights[i] = chunk.sampleHeightmap(heightType, i & 15, i >> 4) + 1;
+			}
+		}
+
+		return new ChunkSnapshot(chunk.getPos().x, chunk.getPos().z, minSection, sections, heights, time);
+	}
+
+	/**
+	 * Snapshot built block-by-block from any block view, for worlds that aren't backed by chunks.
+	 * Much slower than {@link #of(Chunk, int, int, long, Type)}.
+	 */
+	static ChunkSnapshot copyOf(BlockView view, int chunkX, int chunkZ, int minY, int maxY, long time, @Nullable Type heightType) {
+		final int minSection = Math.max(0, minY >> 4);
+		final int maxSection = Math.min(15, maxY >> 4);
+		final Section[] sections = new Section[Math.max(0, maxSection - minSection + 1)];
+		final BlockPos.Mutable mPos = new BlockPos.Mutable();
+		final int x0 = chunkX << 4;
+		final int z0 = chunkZ << 4;
+
+		for (int i = minSection; i <= maxSection; i++) {
+			final BlockState[] states = new BlockState[4096];
+			boolean empty = true;
+			int index = 0;
+
+			for (int y = 0; y < 16; y++) {
+				for (int z = 0; z < 16; z++) {
+					for (int x = 0; x < 16; x++) {
+						final BlockState state = view.getBlockState(mPos.set(x0 + x, (i << 4) + y, z0 + z));
+						empty &= state.isAir();
+						states[index++] = state;
+					}
+				}
+			}
+
+			sections[i - minSection] = empty ? null : new Section(null, states);
+		}
+
+		int[] heights = null;
+
+		if (heightType != null) {
+			heights = new int[256];
+			final int top = (maxSection + 1) << 4;
+
+			for (int i = 0; i < 256; i++) {
+				int y = top;
+
+				while (y > 0 && !heightType.getBlockPredicate().test(view.getBlockState(mPos.set(x0 + (i & 15), y - 1, z0 + (i >> 4))))) {
+					--y;
+				}
+
+				heights[i] = y;
+			}
+		}
+
+		return new ChunkSnapshot(chunkX, chunkZ, minSection, sections, heights, time);
+	}
+
+	/** A few hundred longs and at most 256 palette entries, whatever the section holds */
+	private static Section copy(ChunkSection section) {
+		final PalettedContainerAccess access = (PalettedContainerAccess) section.getContainer();
+		final int bits = access.snapshotBits();
+		final PackedIntegerArray data = new PackedIntegerArray(bits, 4096, access.snapshotStorage().clone());
+
+		if (access.snapshotGlobal()) {
+			return new Section(data, null);
+		}
+
+		final BlockState[] palette = new BlockState[1 << bits];
+
+		for (int i = 0; i < palette.length; i++) {
+			palette[i] = (BlockState) access.snapshotEntry(i);
+		}
+
+		return new Section(data, palette);
+	}
+
+	boolean contains(int x, int z) {
+		return (x >> 4) == chunkX && (z >> 4) == chunkZ;
+	}
+
+	BlockState getBlockState(int x, int y, int z) {
+		final int s = (y >> 4) - minSection;
+
+		if (y < 0 || s < 0 || s >= sections.length || !contains(x, z)) {
+			return AIR;
+		}
+
+		final Section section = sections[s];
+		return section == null ? AIR : section.get(((y & 15) << 8) | ((z & 15) << 4) | (x & 15));
+	}
+
+	/** Only valid if heights were captured */
+	int getTopY(int x, int z) {
+		return heights[((z & 15) << 4) | (x & 15)];
+	}
+
+	@Override
+	public BlockState getBlockState(BlockPos pos) {
+		return getBlockState(pos.getX(), pos.getY(), pos.getZ());
+	}
+
+	@Override
+	public FluidState getFluidState(BlockPos pos) {
+		return getBlockState(pos).getFluidState();
+	}
+
+	@Override
+	@Nullable
+	public BlockEntity getBlockEntity(BlockPos pos) {
+		return null;
+	}
+}
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * Priority queue of {@link RelativePos} values, nearest to origin first.
+ * Squared distances are small integers, so entries are bucketed by exact
+ * squared distance and the lowest non-empty bucket is found from a two-level
+ * occupancy bitmap. Enqueue and dequeue are constant time.
+ * Order within a bucket is unspecified.<p>
+ *
+ * Optionally ignores positions already queued.
+ */
+class DistanceQueue {
+	private final PosBitSet members;
+
+	/** Lists are kept once created and reused when the bucket fills again */
+	private final Int2ObjectOpenHashMap<IntArrayList> buckets = new Int2ObjectOpenHashMap<>();
+
+	/** One bit per squared distance with a non-empty bucket */
+	private long[] words = new long[64];
+
+	/** One bit per non-zero word */
+	private long[] summary = new long[1];
+
+	private int size = 0;
+
+	/** No occupied bucket is lower than this */
+	private int min = Integer.MAX_VALUE;
+
+	DistanceQueue(boolean dedup) {
+		members = dedup ? new PosBitSet() : null;
+	}
+
+	public void enqueue(int relativePos) {
+		if (members != null && !members.add(relativePos)) {
+			return;
+		}
+
+		final int d = RelativePos.squaredDistance(relativePos);
+		IntArrayList list = buckets.get(d);
+
+		if (list == null) {
+			list = new IntArrayList();
+			buckets.put(d, list);
+		}
+
+		if (list.isEmpty()) {
+			setBit(d);
+		}
+
+		list.add(relativePos);
+		++size;
+
+		if (d < min) {
+			min = d;
+		}
+	}
+
+	public int dequeueInt() {
+		final int d = findMin();
+		final IntArrayList list = buckets.get(d);
+		final int result = list.popInt();
+
+		if (list.isEmpty()) {
+			clearBit(d);
+		}
+
+		if (--size == 0) {
+			min = Integer.MAX_VALUE;
+		}
+
+		if (members != null) {
+			members.remove(result);
+		}
+
+		return result;
+	}
+
+	public int firstInt() {
+		return buckets.get(findMin()).topInt();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		if (size != 0) {
+			for (final IntArrayList list : buckets.values()) {
+				list.clear();
+			}
+
+			Arrays.fill(words, 0);
+			Arrays.fill(summary, 0);
+			size = 0;
+			min = Integer.MAX_VALUE;
+
+			if (members != null) {
+				members.clear();
+			}
+		}
+	}
+
+	public int[] toIntArray() {
+		final int[] result = new int[size];
+		int i = 0;
+
+		for (final IntArrayList list : buckets.values()) {
+			final int n = list.size();
+
+			if (n != 0) {
+				list.getElements(0, result, i, n);
+				i += n;
+			}
+		}
+
+		return result;
+	}
+
+	private int findMin() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+
+		int w = min >> 6;
+		long bits = words[w] & (-1L << (min & 63));
+
+		if (bits == 0) {
+			// find next non-zero word from summary
+			final int start = w + 1;
+			int s = start >> 6;
+			long sbits = summary[s] & (-1L << (start & 63));
+
+			while (sbits == 0) {
+				sbits = summary[++s];
+			}
+
+			w = (s << 6) | Long.numberOfTrailingZeros(sbits);
+			bits = words[w];
+		}
+
+		min = (w << 6) | Long.numberOfTrailingZeros(bits);
+		return min;
+	}
+
+	private void setBit(int d) {
+		final int w = d >> 6;
+
+		if (w >= words.length) {
+			words = Arrays.copyOf(words, Math.max(w + 1, words.length * 2));
+			summary = Arrays.copyOf(summary, (words.length + 63) >> 6);
+		}
+
+		words[w] |= 1L << d;
+		summary[w >> 6] |= 1L << w;
+	}
+
+	private void clearBit(int d) {
+		final int w = d >> 6;
+		final long bits = words[w] & ~(1L << d);
+		words[w] = bits;
+
+		if (bits == 0) {
+			summary[w >> 6] &= ~(1L << w);
+		}
+	}
+}
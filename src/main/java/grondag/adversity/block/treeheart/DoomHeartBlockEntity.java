@@ -24,8 +24,6 @@ package grondag.adversity.block.treeheart;
 import java.util.Comparator;
 import java.util.Random;
 
-import io.netty.util.internal.ThreadLocalRandom;
-
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.block.entity.BlockEntityType;
@@ -42,7 +40,9 @@ import net.minecraft.world.GameRules;
 import net.minecraft.world.SpawnHelper;
 import net.minecraft.world.World;
 
+import grondag.adversity.block.treeheart.HeartMetrics.Phase;
 import grondag.adversity.entity.WalkerEntity;
+import grondag.adversity.entity.WalkerRegistry;
 import grondag.adversity.registry.AdversityBlocks;
 import grondag.adversity.registry.AdversityEntities;
 
@@ -61,7 +61,17 @@ public class DoomHeartBlockEntity extends BlockEntity implements Tickable {
 
 	Job job = null;
 
+	/** System.nanoTime() after which jobs should yield for this tick */
+	long deadline;
+
 	final BlockPos.Mutable mPos = new BlockPos.Mutable();
+	final SectionWriter writer = new SectionWriter();
+	final HeartMetrics metrics = new HeartMetrics();
+
+	private TreeWorld treeWorld = null;
+
+	/** All growth randomness comes from here so runs can be reproduced from a seed */
+	final Random random = new Random();
 
 	public DoomHeartBlockEntity(BlockEntityType<?> entityType) {
 		super(entityType);
@@ -113,22 +123,19 @@ public class DoomHeartBlockEntity extends BlockEntity implements Tickable {
 		}
 	}
 
-	@Override
-	public void markInvalid() {
-		if (world !=null  && !world.isClient) {
-			DoomTreeTracker.untrack(world, pos);
-			forceChunks((ServerWorld) world, new ChunkPos(pos), false);
-		}
-
-		super.markInvalid();
-	}
-
 	@Override
 	public void tick() {
 		if (world == null || world.isClient) {
 			return;
 		}
 
+		tickTree(TreeScheduler.slice());
+	}
+
+	/** Growth for one tick - does not require a world if a stand-in tree world has been set */
+	void tickTree(long sliceNanos) {
+		deadline = System.nanoTime() + sliceNanos;
+
 		++power;
 		--tickCounter;
 
@@ -137,12 +144,47 @@ public class DoomHeartBlockEntity extends BlockEntity implements Tickable {
 		if (job == null) {
 			idle();
 		} else {
+			final long start = System.nanoTime();
 			job = job.apply(this);
+			metrics.add(Phase.JOB, start);
+		}
+
+		final long flushStart = System.nanoTime();
+		writer.flush(treeWorld());
+		metrics.add(Phase.FLUSH, flushStart);
+
+		// registry is saved before chunks, so it's kept current here rather than in toTag
+		if (logs != null) {
+			DoomTreeTracker.update(this);
 		}
 
+		metrics.endTick();
+
 		itMe = false;
 	}
 
+	/** For running growth against something other than the heart's world */
+	void setTreeWorld(TreeWorld treeWorld) {
+		this.treeWorld = treeWorld;
+	}
+
+	/** Block access for growth code */
+	TreeWorld treeWorld() {
+		TreeWorld result = treeWorld;
+
+		if (result == null || (result instanceof LiveTreeWorld && ((LiveTreeWorld) result).world != world)) {
+			result = new LiveTreeWorld(world);
+			treeWorld = result;
+		}
+
+		return result;
+	}
+
+	/** True while this heart has time left in its slice for the current tick */
+	boolean hasTime() {
+		return System.nanoTime() < deadline;
+	}
+
 	static final int MOB_COST = 2000;
 	static final int TARGET_COUNT = 8;
 
@@ -151,17 +193,8 @@ public class DoomHeartBlockEntity extends BlockEntity implements Tickable {
 			return;
 		}
 
-		int count = 0;
 		final BlockPos pos = this.pos;
-		final int x = pos.getX();
-		final int y = pos.getY();
-		final int z = pos.getZ();
-
-		for (final WalkerEntity w : WalkerEntity.LOADED) {
-			if(w.squaredDistanceTo(x, y, z) < 4096) {
-				count++;
-			}
-		}
+		final int count = WalkerRegistry.countWithin(world, pos.getX(), pos.getY(), pos.getZ(), 64);
 		final int maxSpawnable = Math.min(TARGET_COUNT, (int) (power/ TARGET_COUNT));
 		final int spawnCount = MathHelper.clamp(TARGET_COUNT - count, 0, maxSpawnable);
 
@@ -176,7 +209,7 @@ public class DoomHeartBlockEntity extends BlockEntity implements Tickable {
 	}
 
 	BlockPos findSpawnPosition() {
-		final Random rand = ThreadLocalRandom.current();
+		final Random rand = random;
 		final BlockPos pos = this.pos;
 		final World world = this.world;
 
@@ -222,26 +255,36 @@ public class DoomHeartBlockEntity extends BlockEntity implements Tickable {
 		if (tickCounter <= 0 && power >= 2000) {
 			final boolean noBuilds = builds.isEmpty() && branches.isEmpty();
 
-			if (power >= MOB_COST && noBuilds && (world.getTime() & 0x127) == 0) {
-				spawnMobs();
+			if (power >= MOB_COST && noBuilds && (treeWorld().getTime() & 0x127) == 0) {
+				final long start = System.nanoTime();
+				treeWorld().spawnMobs(this);
+				metrics.add(Phase.SPAWN, start);
 			}
 
 			if((leafTick || noBuilds) && logs.hasBranches()) {
+				final long start = System.nanoTime();
 				LeafGrower.growLeaves(this);
+				metrics.add(Phase.LEAVES, start);
 				leafTick = false;
 				return;
 			} else if (!noBuilds) {
 				if (builds.buildDistanceSquared() > branches.buildDistanceSquared()) {
+					final long start = System.nanoTime();
 					branches.build(this);
+					metrics.add(Phase.BRANCH, start);
 				} else {
+					final long start = System.nanoTime();
 					builds.build(this);
+					metrics.add(Phase.TRUNK, start);
 				}
 				leafTick = true;
 				return;
 			}
 		}
 
+		final long start = System.nanoTime();
 		troll.troll(this);
+		metrics.add(Phase.TROLL, start);
 	}
 
 	void resetTickCounter() {
@@ -263,19 +306,38 @@ public class DoomHeartBlockEntity extends BlockEntity implements Tickable {
 	static final String BRANCH_KEY = "branches";
 	static final String POWER_KEY = "power";
 	static final String TROLL_KEY = "troll";
+	static final String TROLL_Y_KEY = "troll_y";
+	static final String TROLL_INDEX_KEY = "troll_index";
+
+	/**
+	 * Absent in hearts saved before positions were encoded - those have
+	 * raw int arrays under the same keys and are read once then rewritten.
+	 */
+	static final String FORMAT_KEY = "format";
+	static final int FORMAT = 1;
 
 	@Override
 	public void fromTag(CompoundTag tag) {
 		super.fromTag(tag);
+		readTree(tag);
+	}
 
+	/** Tree state only - separate from block entity data so it can be exercised without a world */
+	void readTree(CompoundTag tag) {
 		power = tag.getLong(POWER_KEY);
 
+		final boolean legacy = tag.getInt(FORMAT_KEY) < FORMAT;
+
 		if (logs == null) {
 			logs = new LogTracker(getPos());
 		}
 
 		if  (tag.contains(LOG_KEY)) {
-			logs.fromArray(tag.getIntArray(LOG_KEY));
+			if (legacy) {
+				logs.fromArray(tag.getIntArray(LOG_KEY));
+			} else {
+				logs.fromBytes(tag.getByteArray(LOG_KEY));
+			}
 		}
 
 		if (builds == null) {
@@ -287,7 +349,7 @@ public class DoomHeartBlockEntity extends BlockEntity implements Tickable {
 		}
 
 		if (tag.contains(BRANCH_KEY)) {
-			branches.fromArray(tag.getIntArray(BRANCH_KEY));
+			branches.fromArray(legacy ? tag.getIntArray(BRANCH_KEY) : PosCodec.decode(tag.getByteArray(BRANCH_KEY)));
 		}
 
 		if (troll == null) {
@@ -295,7 +357,11 @@ public class DoomHeartBlockEntity extends BlockEntity implements Tickable {
 		}
 
 		if (tag.contains(TROLL_KEY)) {
-			troll.fromArray(tag.getIntArray(TROLL_KEY));
+			if (legacy) {
+				troll.fromArray(tag.getIntArray(TROLL_KEY));
+			} else {
+				troll.fromQueue(tag.getInt(TROLL_Y_KEY), tag.getInt(TROLL_INDEX_KEY), PosCodec.decode(tag.getByteArray(TROLL_KEY)));
+			}
 		}
 
 		job = new BuildPopulator(this);
@@ -304,21 +370,27 @@ public class DoomHeartBlockEntity extends BlockEntity implements Tickable {
 	@Override
 	public CompoundTag toTag(CompoundTag tag) {
 		tag = super.toTag(tag);
+		writeTree(tag);
+		return tag;
+	}
+
+	void writeTree(CompoundTag tag) {
 		tag.putLong(POWER_KEY, power);
+		tag.putInt(FORMAT_KEY, FORMAT);
 
 		if (logs != null) {
-			tag.putIntArray(LOG_KEY, logs.toIntArray());
+			tag.putByteArray(LOG_KEY, logs.toBytes());
 		}
 
 		if (branches != null) {
-			tag.putIntArray(BRANCH_KEY, branches.toIntArray());
+			tag.putByteArray(BRANCH_KEY, PosCodec.encode(branches.toIntArray()));
 		}
 
 		if (troll != null) {
-			tag.putIntArray(TROLL_KEY, troll.toIntArray());
+			tag.putInt(TROLL_Y_KEY, troll.y);
+			tag.putInt(TROLL_INDEX_KEY, troll.index);
+			tag.putByteArray(TROLL_KEY, PosCodec.encode(troll.toIntArray()));
 		}
-
-		return tag;
 	}
 
 	public void reportBreak(BlockPos pos, boolean isLog) {
@@ -0,0 +1,299 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import javax.annotation.Nullable;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectCollection;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.PersistentState;
+
+/**
+ * World-scoped registry of doom hearts. Saved with the dimension so that
+ * proximity checks and chunk tickets are correct from the moment the world
+ * loads, without waiting for heart chunks to load and without scanning.<p>
+ *
+ * Trees are indexed by every chunk that falls within range of each tree so that
+ * lookups don't depend on how many trees exist. Chunk coverage is conservative -
+ * callers still do an exact distance test against the (almost always one)
+ * candidate in the chunk.
+ */
+class DoomTreeState extends PersistentState {
+	static final String KEY = "adversity_doom_trees";
+
+	static class TreeData {
+		final long packedPos;
+		final int x;
+		final int z;
+		final BlockPos pos;
+
+		long power;
+		int buildCount;
+		int branchCount;
+		int trollCount;
+
+		TreeData(BlockPos pos) {
+			this.pos = pos;
+			packedPos = pos.asLong();
+			x = pos.getX();
+			z = pos.getZ();
+		}
+
+		boolean isNear(int x, int z) {
+			return horizontalDistance(x, z) <=  DoomTreeTracker.LIMIT;
+		}
+
+		int horizontalDistance(int x, int z) {
+			final int dx = x - this.x;
+			final int dz = z - this.z;
+
+			return dx * dx + dz * dz;
+		}
+	}
+
+	private static final TreeData[] NO_TREES = new TreeData[0];
+
+	private static final String TREES_KEY = "trees";
+	private static final String POS_KEY = "pos";
+	private static final String POWER_KEY = "power";
+	private static final String BUILDS_KEY = "builds";
+	private static final String BRANCHES_KEY = "branches";
+	private static final String TROLL_KEY = "troll";
+
+	private final Long2ObjectOpenHashMap<TreeData> trees = new Long2ObjectOpenHashMap<>();
+	private final Long2ObjectOpenHashMap<TreeData[]> nearChunks = new Long2ObjectOpenHashMap<>();
+	private final Long2ObjectOpenHashMap<TreeData[]> growChunks = new Long2ObjectOpenHashMap<>();
+
+	DoomTreeState() {
+		super(KEY);
+		nearChunks.defaultReturnValue(NO_TREES);
+		growChunks.defaultReturnValue(NO_TREES);
+	}
+
+	static DoomTreeState get(ServerWorld world) {
+		return world.getPersistentStateManager().getOrCreate(DoomTreeState::new, KEY);
+	}
+
+	/** Loaded or saved registry for the world, without creating one - null if the world has never had a tree */
+	@Nullable
+	static DoomTreeState find(ServerWorld world) {
+		return world.getPersistentStateManager().get(DoomTreeState::new, KEY);
+	}
+
+	int size() {
+		return trees.size();
+	}
+
+	ObjectCollection<TreeData> trees() {
+		return trees.values();
+	}
+
+	TreeData get(long packedPos) {
+		return trees.get(packedPos);
+	}
+
+	TreeData add(BlockPos pos) {
+		TreeData tree = trees.get(pos.asLong());
+
+		if (tree == null) {
+			tree = new TreeData(pos.toImmutable());
+			index(tree);
+			markDirty();
+		}
+
+		return tree;
+	}
+
+	boolean remove(BlockPos pos) {
+		final TreeData tree = trees.remove(pos.asLong());
+
+		if (tree == null) {
+			return false;
+		}
+
+		cover(nearChunks, tree, DoomTreeTracker.LIMIT, false);
+		cover(growChunks, tree, DoomTreeTracker.GROW_LIMIT, false);
+		markDirty();
+		return true;
+	}
+
+	void update(BlockPos pos, long power, int buildCount, int branchCount, int trollCount) {
+		final TreeData tree = trees.get(pos.asLong());
+
+		if (tree != null && (tree.power != power || tree.buildCount != buildCount
+				|| tree.branchCount != branchCount || tree.trollCount != trollCount)) {
+			tree.power = power;
+			tree.buildCount = buildCount;
+			tree.branchCount = branchCount;
+			tree.trollCount = trollCount;
+			markDirty();
+		}
+	}
+
+	private void index(TreeData tree) {
+		trees.put(tree.packedPos, tree);
+		cover(nearChunks, tree, DoomTreeTracker.LIMIT, true);
+		cover(growChunks, tree, DoomTreeTracker.GROW_LIMIT, true);
+	}
+
+	TreeData getNear(int x, int z) {
+		for (final TreeData t : nearChunks.get(ChunkPos.toLong(x >> 4, z >> 4))) {
+			if (t.isNear(x, z)) {
+				return t;
+			}
+		}
+
+		return null;
+	}
+
+	boolean isCrowded(int x, int z) {
+		for (final TreeData t : growChunks.get(ChunkPos.toLong(x >> 4, z >> 4))) {
+			if (t.horizontalDistance(x, z) < DoomTreeTracker.GROW_LIMIT) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public void fromTag(CompoundTag tag) {
+		trees.clear();
+		nearChunks.clear();
+		growChunks.clear();
+
+		final ListTag list = tag.getList(TREES_KEY, 10);
+		final int limit = list.size();
+
+		for (int i = 0; i < limit; i++) {
+			final CompoundTag treeTag = list.getCompound(i);
+			final TreeData tree = new TreeData(BlockPos.fromLong(treeTag.getLong(POS_KEY)));
+			tree.power = treeTag.getLong(POWER_KEY);
+			tree.buildCount = treeTag.getInt(BUILDS_KEY);
+			tree.branchCount = treeTag.getInt(BRANCHES_KEY);
+			tree.trollCount = treeTag.getInt(TROLL_KEY);
+			index(tree);
+		}
+	}
+
+	@Override
+	public CompoundTag toTag(CompoundTag tag) {
+		final ListTag list = new ListTag();
+
+		for (final TreeData tree : trees.values()) {
+			final CompoundTag treeTag = new CompoundTag();
+			treeTag.putLong(POS_KEY, tree.packedPos);
+			treeTag.putLong(POWER_KEY, tree.power);
+			treeTag.putInt(BUILDS_KEY, tree.buildCount);
+			treeTag.putInt(BRANCHES_KEY, tree.branchCount);
+			treeTag.putInt(TROLL_KEY, tree.trollCount);
+			list.add(treeTag);
+		}
+
+		tag.put(TREES_KEY, list);
+		return tag;
+	}
+
+	/** adds or removes tree from every chunk with any block within the given squared horizontal distance */
+	private static void cover(Long2ObjectOpenHashMap<TreeData[]> chunks, TreeData tree, int squaredRadius, boolean add) {
+		final int radius = (int) Math.ceil(Math.sqrt(squaredRadius));
+		final int x = tree.x;
+		final int z = tree.z;
+		final int cxMax = (x + radius) >> 4;
+		final int czMax = (z + radius) >> 4;
+
+		for (int cx = (x - radius) >> 4; cx <= cxMax; cx++) {
+			final int dx = axisDistance(x, cx << 4);
+
+			for (int cz = (z - radius) >> 4; cz <= czMax; cz++) {
+				final int dz = axisDistance(z, cz << 4);
+
+				if (dx * dx + dz * dz <= squaredRadius) {
+					final long key = ChunkPos.toLong(cx, cz);
+
+					if (add) {
+						chunks.put(key, with(chunks.get(key), tree));
+					} else {
+						final TreeData[] remaining = without(chunks.get(key), tree);
+
+						if (remaining.length == 0) {
+							chunks.remove(key);
+						} else {
+							chunks.put(key, remaining);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/** distance from coordinate to nearest block in the 16-block span starting at min, zero if inside */
+	private static int axisDistance(int coord, int min) {
+		if (coord < min) {
+			return min - coord;
+		} else if (coord > min + 15) {
+			return coord - min - 15;
+		} else {
+			return 0;
+		}
+	}
+
+	private static TreeData[] with(TreeData[] trees, TreeData tree) {
+		final int len = trees.length;
+		final TreeData[] result = new TreeData[len + 1];
+		System.arraycopy(trees, 0, result, 0, len);
+		result[len] = tree;
+		return result;
+	}
+
+	private static TreeData[] without(TreeData[] trees, TreeData tree) {
+		final int len = trees.length;
+		int count = 0;
+
+		for (int i = 0; i < len; i++) {
+			if (trees[i] != tree) {
+				count++;
+			}
+		}
+
+		if (count == len) {
+			return trees;
+		}
+
+		final TreeData[] result = new TreeData[count];
+		int j = 0;
+
+		for (int i = 0; i < len; i++) {
+			if (trees[i] != tree) {
+				result[j++] = trees[i];
+			}
+		}
+
+		return result;
+	}
+}
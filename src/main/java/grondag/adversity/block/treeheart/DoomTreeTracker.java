@@ -21,95 +21,63 @@
  ******************************************************************************/
 package grondag.adversity.block.treeheart;
 
-import grondag.adversity.AdversityConfig;
-import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
 
+import grondag.adversity.AdversityConfig;
+import grondag.adversity.block.treeheart.DoomTreeState.TreeData;
+
 public final class DoomTreeTracker {
 	private DoomTreeTracker() {}
 
-	private static class TreeData {
-		private final int dimId;
-		private final long packedPos;
-		private final int x;
-		private final int z;
-		private final BlockPos pos;
-
-		TreeData(int dimId, BlockPos pos) {
-			this.dimId = dimId;
-			this.pos = pos;
-			packedPos = pos.asLong();
-			x = pos.getX();
-			z = pos.getZ();
-		}
-
-		boolean isNear(BlockPos pos) {
-			return horizontalDistance(pos) <=  LIMIT;
-		}
-
-		int horizontalDistance(BlockPos pos) {
-			final int dx = pos.getX() - x;
-			final int dz = pos.getZ() - z;
-
-			return dx * dx + dz * dz;
-		}
-	}
-
 	static final int LIMIT = TreeUtils.RADIUS * TreeUtils.RADIUS;
 
 	static final int GROW_LIMIT = LIMIT * 4;
 
-	static final ObjectArrayList<TreeData> TREES = new ObjectArrayList<>(AdversityConfig.MAX_ACTIVE_TREES);
-
-	public static void clear() {
-		TREES.clear();
+	/**
+	 * Loads the heart registry for every world and restores chunk tickets
+	 * for known hearts so they resume growing without waiting for a player.
+	 */
+	public static void load(MinecraftServer server) {
+		for (final ServerWorld world : server.getWorlds()) {
+			for (final TreeData tree : DoomTreeState.get(world).trees()) {
+				DoomHeartBlockEntity.forceChunks(world, new ChunkPos(tree.pos), true);
+			}
+		}
 	}
 
 	static void track(World world, BlockPos pos) {
-		if (!world.isClient && get(world, pos) == null) {
-			TREES.add(new TreeData(world.dimension.getType().getRawId(), pos));
+		if (!world.isClient) {
+			DoomTreeState.get((ServerWorld) world).add(pos);
 		}
 	}
 
-	static void untrack(World world, BlockPos pos) {
-		if (!world.isClient) {
-			final TreeData tree = get(world, pos);
-
-			if (tree != null) {
-				TREES.remove(tree);
-			}
+	/** Call when a heart is destroyed - chunk unloading is not removal */
+	public static void untrack(World world, BlockPos pos) {
+		if (!world.isClient && DoomTreeState.get((ServerWorld) world).remove(pos)) {
+			DoomHeartBlockEntity.forceChunks((ServerWorld) world, new ChunkPos(pos), false);
 		}
 	}
 
-	private static TreeData get(World world, BlockPos pos) {
-		final int dim = world.dimension.getType().getRawId();
-		final long p = pos.asLong();
+	/** Call from the heart's tick - marks the registry dirty only when a value changed */
+	static void update(DoomHeartBlockEntity heart) {
+		final World world = heart.getWorld();
 
-		for (final TreeData t : TREES) {
-			if (t.dimId == dim && t.packedPos == p) {
-				return t;
-			}
+		if (world != null && !world.isClient) {
+			DoomTreeState.get((ServerWorld) world).update(heart.getPos(), heart.power, heart.builds.size(), heart.branches.size(), heart.troll.size());
 		}
-
-		return null;
 	}
 
 	private static TreeData getNear(World world, BlockPos pos) {
-		final int dim = world.dimension.getType().getRawId();
-
-		for (final TreeData t : TREES) {
-			if (t.dimId == dim && t.isNear(pos)) {
-				return t;
-			}
-		}
-
-		return null;
+		return DoomTreeState.get((ServerWorld) world).getNear(pos.getX(), pos.getZ());
 	}
 
 	public static boolean isNear(World world, BlockPos pos) {
-		return getNear(world, pos) != null;
+		return !world.isClient && getNear(world, pos) != null;
 	}
 
 	public static void reportBreak(World world, BlockPos pos, boolean isLog) {
@@ -127,17 +95,20 @@ public final class DoomTreeTracker {
 	}
 
 	public static boolean canGrow(World world, BlockPos pos) {
-		if (TREES.size() >= AdversityConfig.MAX_ACTIVE_TREES || (255 - pos.getY()) < 64) return false;
+		if (world.isClient || (255 - pos.getY()) < 64) return false;
 
-		final int dim = world.dimension.getType().getRawId();
+		int treeCount = 0;
 
-		for (final TreeData t : TREES) {
-			if (t.dimId == dim && t.horizontalDistance(pos) < GROW_LIMIT) {
-				return false;
+		for (final ServerWorld w : world.getServer().getWorlds()) {
+			final DoomTreeState state = DoomTreeState.find(w);
+
+			if (state != null) {
+				treeCount += state.size();
 			}
 		}
 
-		return true;
-	}
+		if (treeCount >= AdversityConfig.MAX_ACTIVE_TREES) return false;
 
+		return !DoomTreeState.get((ServerWorld) world).isCrowded(pos.getX(), pos.getZ());
+	}
 }
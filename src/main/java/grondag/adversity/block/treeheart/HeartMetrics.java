@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+/** Runtime counters for one heart. Not saved - resets when the heart loads. */
+class HeartMetrics {
+	enum Phase {
+		JOB,
+		TRUNK,
+		BRANCH,
+		LEAVES,
+		TROLL,
+		SPAWN,
+		FLUSH;
+
+		static final Phase[] VALUES = values();
+	}
+
+	/** Weight of the newest tick in moving averages */
+	private static final double ALPHA = 1.0 / 32;
+
+	long blocksConverted;
+	long logsPlaced;
+	long leavesPlaced;
+	long entitiesHarvested;
+	long ticks;
+
+	private final long[] tickNanos = new long[Phase.VALUES.length];
+	private final long[] totalNanos = new long[Phase.VALUES.length];
+	private final double[] averageNanos = new double[Phase.VALUES.length];
+
+	void add(Phase phase, long startNanos) {
+		tickNanos[phase.ordinal()] += System.nanoTime() - startNanos;
+	}
+
+	/** Folds the current tick into totals and averages */
+	void endTick() {
+		++ticks;
+
+		for (int i = 0; i < tickNanos.length; i++) {
+			final long n = tickNanos[i];
+			totalNanos[i] += n;
+			averageNanos[i] += (n - averageNanos[i]) * ALPHA;
+			tickNanos[i] = 0;
+		}
+	}
+
+	/** Recent nanoseconds per tick */
+	double averageNanos(Phase phase) {
+		return averageNanos[phase.ordinal()];
+	}
+
+	double averageNanos() {
+		double result = 0;
+
+		for (final double n : averageNanos) {
+			result += n;
+		}
+
+		return result;
+	}
+
+	long totalNanos(Phase phase) {
+		return totalNanos[phase.ordinal()];
+	}
+
+	/** Phase using the most time recently */
+	Phase topPhase() {
+		int result = 0;
+
+		for (int i = 1; i < averageNanos.length; i++) {
+			if (averageNanos[i] > averageNanos[result]) {
+				result = i;
+			}
+		}
+
+		return Phase.VALUES[result];
+	}
+}
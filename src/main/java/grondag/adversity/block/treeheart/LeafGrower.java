@@ -23,29 +23,33 @@ package grondag.adversity.block.treeheart;
 
 import java.util.Random;
 
+import grondag.adversity.jfr.AdversityJfr;
+import grondag.adversity.jfr.Span;
 import grondag.adversity.registry.AdversityBlockStates;
 import grondag.adversity.registry.AdversityBlocks;
-import io.netty.util.internal.ThreadLocalRandom;
 import net.minecraft.block.BlockState;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.BlockPos.Mutable;
-import net.minecraft.world.World;
+import net.minecraft.world.BlockView;
 
 public class LeafGrower {
 	static void growLeaves(final DoomHeartBlockEntity heart) {
 		if (!heart.logs.hasBranches()) return;
 
+		final Span span = AdversityJfr.leafGrowth();
 		final BlockPos.Mutable mPos = heart.mPos;
-		final Random r = ThreadLocalRandom.current();
-		final World world = heart.getWorld();
+		final Random r = heart.random;
+		final TreeWorld world = heart.treeWorld();
 
 		final BlockPos origin = heart.getPos();
 
-		for (int i = 0; i < 8; i++) {
+		int i = 0;
+
+		for (; i < 8; i++) {
 			final int rp = heart.logs.randomBranch(r);
 
 			if (rp == Integer.MIN_VALUE) {
-				return;
+				break;
 			}
 
 			RelativePos.set(mPos, origin, rp);
@@ -53,18 +57,22 @@ public class LeafGrower {
 
 			if (world.getBlockState(mPos).getBlock() != AdversityBlocks.DOOM_LOG) continue;
 
-			final int placeCount = addLeaves(world, origin, heart.logs, pos, mPos, r);
+			final int placeCount = addLeaves(world, heart.writer, origin, heart.logs, pos, mPos, r);
 
 			if (placeCount > 0) {
 				heart.power -= placeCount * 5;
+				heart.metrics.leavesPlaced += placeCount;
+				span.finish(i + 1, placeCount, 0);
 				return;
 			}
 
-			if (!heart.logs.hasBranches()) return;
+			if (!heart.logs.hasBranches()) break;
 		}
+
+		span.finish(i, 0, 0);
 	}
 
-	private static int addLeaves(final World world, final BlockPos origin, final LogTracker logs, final long pos, final Mutable mPos, final Random r)  {
+	static int addLeaves(final BlockView world, final SectionWriter writer, final BlockPos origin, final LogTracker logs, final long pos, final Mutable mPos, final Random r)  {
 		int placeCount = 0;
 
 		for (int x = -4; x <= 4; x++) {
@@ -74,26 +82,26 @@ public class LeafGrower {
 				if (x * x + z * z > 16) continue;
 
 				if(sqd > 1) {
-					placeCount += setLeaf(world, mPos.set(BlockPos.add(pos, x, 0, z)));
+					placeCount += setLeaf(world, writer, mPos.set(BlockPos.add(pos, x, 0, z)));
 				}
 
 				if (sqd > 9) continue;
 
-				placeCount += setLeaf(world, mPos.set(BlockPos.add(pos, x, 1, z)));
+				placeCount += setLeaf(world, writer, mPos.set(BlockPos.add(pos, x, 1, z)));
 
 
 				if(sqd > 1) {
 					if(clearAround(logs, RelativePos.relativePos(origin, BlockPos.add(pos, x, 0, z)))) {
-						placeCount += setLeaf(world, mPos.set(BlockPos.add(pos, x, -1, z)));
+						placeCount += setLeaf(world, writer, mPos.set(BlockPos.add(pos, x, -1, z)));
 					}
 				}
 
 				if (sqd > 4) continue;
 
-				placeCount += setLeaf(world, mPos.set(BlockPos.add(pos, x, 2, z)));
+				placeCount += setLeaf(world, writer, mPos.set(BlockPos.add(pos, x, 2, z)));
 
 				if (sqd == 0) {
-					placeCount += setLeaf(world, mPos.set(BlockPos.add(pos, x, 3, z)));
+					placeCount += setLeaf(world, writer, mPos.set(BlockPos.add(pos, x, 3, z)));
 				}
 			}
 		}
@@ -118,10 +126,11 @@ public class LeafGrower {
 		return true;
 	}
 
-	private static int setLeaf(final World world, final BlockPos pos) {
+	private static int setLeaf(final BlockView world, final SectionWriter writer, final BlockPos pos) {
 		final BlockState state = world.getBlockState(pos);
 		if (state.isAir() || state.getBlock() == AdversityBlocks.MIASMA_BLOCK) {
-			return world.setBlockState(pos, AdversityBlockStates.LEAF_STATE, 18) ? 1 : 0;
+			writer.setBlockState(pos, AdversityBlockStates.LEAF_STATE, 18);
+			return 1;
 		} else {
 			return 0;
 		}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.LivingEntity;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.Heightmap.Type;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.WorldChunk;
+
+import grondag.adversity.entity.DoomEffect;
+import grondag.adversity.entity.DoomableChunkAccess;
+import grondag.adversity.packet.DoomS2C;
+import grondag.fermion.position.PackedBlockPosList;
+
+/** Tree world backed by a live server world */
+class LiveTreeWorld implements TreeWorld {
+	final World world;
+
+	LiveTreeWorld(World world) {
+		this.world = world;
+	}
+
+	@Override
+	public boolean isLoaded(BlockPos pos) {
+		return World.isValid(pos) && world.isChunkLoaded(pos);
+	}
+
+	@Override
+	public void setBlockState(BlockPos pos, BlockState state, int flags) {
+		world.setBlockState(pos, state, flags);
+	}
+
+	@Override
+	public long getTime() {
+		return world.getTime();
+	}
+
+	@Override
+	@Nullable
+	public ChunkSnapshot snapshot(int chunkX, int chunkZ, int minY, int maxY, @Nullable Type heightType) {
+		final WorldChunk chunk = world.getChunkManager().getWorldChunk(chunkX, chunkZ, false);
+		return chunk == null ? null : ChunkSnapshot.of(chunk, minY, maxY, world.getTime(), heightType);
+	}
+
+	@Override
+	public void collectDoomable(int x, int y, int z, int height, List<Entity> targets) {
+		final WorldChunk chunk = world.getChunkManager().getWorldChunk(x >> 4, z >> 4, false);
+
+		if (chunk == null) {
+			return;
+		}
+
+		final DoomableChunkAccess access = (DoomableChunkAccess) chunk;
+
+		// entities are bucketed by feet position - look a little either side like chunk entity queries do
+		final int minSection = (y - 2) >> 4;
+		final int maxSection = (y + height + 2) >> 4;
+
+		for (int section = minSection; section <= maxSection; section++) {
+			final List<LivingEntity> candidates = access.getDoomCandidates(section);
+
+			if (candidates == null || candidates.isEmpty()) {
+				continue;
+			}
+
+			final int limit = candidates.size();
+
+			for (int i = 0; i < limit; i++) {
+				final LivingEntity e = candidates.get(i);
+
+				if (e.getBoundingBox().intersects(x, y, z, x + 1, y + height, z + 1) && DoomEffect.canDoom(e)) {
+					targets.add(e);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void sendReports(PackedBlockPosList reports) {
+		DoomS2C.send(world, reports);
+	}
+
+	@Override
+	public void spawnMobs(DoomHeartBlockEntity heart) {
+		heart.spawnMobs();
+	}
+
+	@Override
+	public BlockState getBlockState(BlockPos pos) {
+		return world.getBlockState(pos);
+	}
+
+	@Override
+	public FluidState getFluidState(BlockPos pos) {
+		return world.getFluidState(pos);
+	}
+
+	@Override
+	@Nullable
+	public BlockEntity getBlockEntity(BlockPos pos) {
+		return world.getBlockEntity(pos);
+	}
+}
@@ -25,18 +25,19 @@ import java.util.Random;
 
 import grondag.adversity.block.tree.DoomLogBlock;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import net.minecraft.util.math.BlockPos;
 
 /** Tracks spaces that should be logs */
-@SuppressWarnings("serial")
-class LogTracker extends IntOpenHashSet {
+class LogTracker extends PosBitSet {
 	private final int originX;
 	private final int originY;
 	private final int originZ;
 
 	private final IntArrayList branches = new IntArrayList();
 
+	/** Saved form, kept until the set changes because chunk saves are frequent */
+	private byte[] encoded = null;
+
 	LogTracker(final BlockPos origin) {
 		originX = origin.getX();
 		originY = origin.getY();
@@ -68,6 +69,10 @@ class LogTracker extends IntOpenHashSet {
 	public boolean add(final int relativePos) {
 		final boolean result = super.add(relativePos);
 
+		if (result) {
+			encoded = null;
+		}
+
 		if (result
 			&& RelativePos.ry(relativePos) > DoomLogBlock.TERMINAL_HEIGHT
 			&& (Math.abs(RelativePos.rx(relativePos)) > TreeUtils.TRUNK_RADIUS
@@ -78,6 +83,39 @@ class LogTracker extends IntOpenHashSet {
 		return result;
 	}
 
+	@Override
+	public boolean remove(final int relativePos) {
+		final boolean result = super.remove(relativePos);
+
+		if (result) {
+			encoded = null;
+		}
+
+		return result;
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		encoded = null;
+	}
+
+	byte[] toBytes() {
+		byte[] result = encoded;
+
+		if (result == null) {
+			result = PosCodec.encodeColumns(toIntArray());
+			encoded = result;
+		}
+
+		return result;
+	}
+
+	void fromBytes(final byte[] bytes) {
+		fromArray(PosCodec.decodeColumns(bytes));
+		encoded = bytes;
+	}
+
 	void fromArray(final int[] relativePositions) {
 		clear();
 		branches.clear();
@@ -95,6 +133,16 @@ class LogTracker extends IntOpenHashSet {
 
 		if (limit == 0) return Integer.MIN_VALUE;
 
-		return branches.removeInt(limit == 1 ? 0 :rand.nextInt(limit));
+		final int i = limit == 1 ? 0 : rand.nextInt(limit);
+		final int result = branches.getInt(i);
+
+		// swap last into the hole instead of shifting - order doesn't matter
+		final int last = branches.removeInt(limit - 1);
+
+		if (i != limit - 1) {
+			branches.set(i, last);
+		}
+
+		return result;
 	}
 }
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package grondag.adversity.block.treeheart;
+
+import javax.annotation.Nullable;
+
+/**
+ * Server-side block state containers expose their packed storage so chunk
+ * snapshots can copy a section in bulk instead of reading every state.
+ * Call on the thread that owns the chunk.
+ */
+public interface PalettedContainerAccess {
+	/** True if entries are raw ids in the global palette */
+	boolean snapshotGlobal();
+
+	/** Bits per entry */
+	int snapshotBits();
+
+	/** Live packed entries - copy before handing to another thread */
+	long[] snapshotStorage();
+
+	/** Local palette entry, or null if the index is unused */
+	@Nullable Object snapshotEntry(int index);
+}
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import java.util.NoSuchElementException;
+
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+/**
+ * Set of {@link RelativePos} values backed by lazily allocated 16x16x16 bit containers
+ * covering the volume a tree can occupy: 128 blocks across and the full world height
+ * below/above the origin. Positions outside that volume go to a plain hash set.
+ */
+class PosBitSet {
+	private static final int HORIZONTAL_OFFSET = 64;
+	private static final int VERTICAL_OFFSET = 256;
+	private static final int HORIZONTAL_MASK = ~(HORIZONTAL_OFFSET * 2 - 1);
+	private static final int VERTICAL_MASK = ~(VERTICAL_OFFSET * 2 - 1);
+
+	/** Containers per horizontal axis */
+	private static final int SPAN = HORIZONTAL_OFFSET * 2 / 16;
+	private static final int CONTAINER_COUNT = SPAN * SPAN * (VERTICAL_OFFSET * 2 / 16);
+
+	/** 4096 bits */
+	private static final int CONTAINER_WORDS = 64;
+
+	private final long[][] containers = new long[CONTAINER_COUNT][];
+	private final IntOpenHashSet overflow = new IntOpenHashSet();
+	private int size = 0;
+
+	private static boolean inVolume(int x, int y, int z) {
+		return (((x | z) & HORIZONTAL_MASK) | (y & VERTICAL_MASK)) == 0;
+	}
+
+	private static int containerIndex(int x, int y, int z) {
+		return (x >> 4) | ((z >> 4) * SPAN) | ((y >> 4) * SPAN * SPAN);
+	}
+
+	private static int bitIndex(int x, int y, int z) {
+		return (x & 15) | ((z & 15) << 4) | ((y & 15) << 8);
+	}
+
+	public boolean contains(final int relativePos) {
+		final int x = RelativePos.rx(relativePos) + HORIZONTAL_OFFSET;
+		final int y = RelativePos.ry(relativePos) + VERTICAL_OFFSET;
+		final int z = RelativePos.rz(relativePos) + HORIZONTAL_OFFSET;
+
+		if (!inVolume(x, y, z)) {
+			return overflow.contains(relativePos);
+		}
+
+		final long[] bits = containers[containerIndex(x, y, z)];
+		final int i = bitIndex(x, y, z);
+		return bits != null && (bits[i >> 6] & (1L << i)) != 0;
+	}
+
+	public boolean add(final int relativePos) {
+		final int x = RelativePos.rx(relativePos) + HORIZONTAL_OFFSET;
+		final int y = RelativePos.ry(relativePos) + VERTICAL_OFFSET;
+		final int z = RelativePos.rz(relativePos) + HORIZONTAL_OFFSET;
+
+		if (!inVolume(x, y, z)) {
+			if (overflow.add(relativePos)) {
+				size++;
+				return true;
+			}
+
+			return false;
+		}
+
+		final int c = containerIndex(x, y, z);
+		long[] bits = containers[c];
+
+		if (bits == null) {
+			bits = new long[CONTAINER_WORDS];
+			containers[c] = bits;
+		}
+
+		final int i = bitIndex(x, y, z);
+		final long word = bits[i >> 6];
+		final long mask = 1L << i;
+
+		if ((word & mask) == 0) {
+			bits[i >> 6] = word | mask;
+			size++;
+			return true;
+		}
+
+		return false;
+	}
+
+	public boolean remove(final int relativePos) {
+		final int x = RelativePos.rx(relativePos) + HORIZONTAL_OFFSET;
+		final int y = RelativePos.ry(relativePos) + VERTICAL_OFFSET;
+		final int z = RelativePos.rz(relativePos) + HORIZONTAL_OFFSET;
+
+		if (!inVolume(x, y, z)) {
+			if (overflow.remove(relativePos)) {
+				size--;
+				return true;
+			}
+
+			return false;
+		}
+
+		final long[] bits = containers[containerIndex(x, y, z)];
+
+		if (bits == null) {
+			return false;
+		}
+
+		final int i = bitIndex(x, y, z);
+		final long word = bits[i >> 6];
+		final long mask = 1L << i;
+
+		if ((word & mask) != 0) {
+			bits[i >> 6] = word & ~mask;
+			size--;
+			return true;
+		}
+
+		return false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		if (size != 0) {
+			for (int i = 0; i < CONTAINER_COUNT; i++) {
+				containers[i] = null;
+			}
+
+			overflow.clear();
+			size = 0;
+		}
+	}
+
+	public int[] toIntArray() {
+		final int[] result = new int[size];
+		final IntIterator it = iterator();
+		int i = 0;
+
+		while (it.hasNext()) {
+			result[i++] = it.nextInt();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Iterates containers in index order, then overflow.
+	 * Additions during iteration may or may not be seen.
+	 */
+	public IntIterator iterator() {
+		return new IntIterator() {
+			int container = -1;
+			int word = CONTAINER_WORDS;
+			long bits = 0;
+			IntIterator overflowIt = null;
+
+			private boolean advance() {
+				while (bits == 0) {
+					if (++word >= CONTAINER_WORDS) {
+						do {
+							if (++container >= CONTAINER_COUNT) {
+								return false;
+							}
+						} while (containers[container] == null);
+
+						word = 0;
+					}
+
+					bits = containers[container][word];
+				}
+
+				return true;
+			}
+
+			@Override
+			public boolean hasNext() {
+				if (overflowIt != null) {
+					return overflowIt.hasNext();
+				}
+
+				if (advance()) {
+					return true;
+				}
+
+				overflowIt = overflow.iterator();
+				return overflowIt.hasNext();
+			}
+
+			@Override
+			public int nextInt() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				if (overflowIt != null) {
+					return overflowIt.nextInt();
+				}
+
+				final int bit = Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+
+				final int i = (word << 6) | bit;
+				final int x = (container % SPAN) * 16 + (i & 15) - HORIZONTAL_OFFSET;
+				final int z = ((container / SPAN) % SPAN) * 16 + ((i >> 4) & 15) - HORIZONTAL_OFFSET;
+				final int y = (container / (SPAN * SPAN)) * 16 + (i >> 8) - VERTICAL_OFFSET;
+				return RelativePos.relativePos(x, y, z);
+			}
+		};
+	}
+}
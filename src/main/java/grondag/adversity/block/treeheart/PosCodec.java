@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * Compact byte encoding for sets of {@link RelativePos} values saved with heart state.
+ * Positions are sorted and written as varint deltas. The column variant
+ * sorts by x/z column then y, and writes runs of vertically adjacent positions
+ * as a start delta and a length, which collapses trunk logs to a few bytes per column.
+ */
+enum PosCodec {
+	;
+
+	/** Order doesn't matter to callers - input array is sorted in place */
+	static byte[] encode(int[] relativePositions) {
+		Arrays.sort(relativePositions);
+
+		final ByteArrayList out = new ByteArrayList(relativePositions.length * 2 + 5);
+		writeVarInt(out, relativePositions.length);
+
+		int last = 0;
+
+		for (final int p : relativePositions) {
+			writeVarInt(out, p - last);
+			last = p;
+		}
+
+		return out.toByteArray();
+	}
+
+	static int[] decode(byte[] bytes) {
+		if (bytes.length == 0) {
+			return new int[0];
+		}
+
+		final int[] cursor = new int[1];
+		final int count = readVarInt(bytes, cursor);
+		final int[] result = new int[count];
+
+		int last = 0;
+
+		for (int i = 0; i < count; i++) {
+			last += readVarInt(bytes, cursor);
+			result[i] = last;
+		}
+
+		return result;
+	}
+
+	static byte[] encodeColumns(int[] relativePositions) {
+		final int count = relativePositions.length;
+
+		for (int i = 0; i < count; i++) {
+			relativePositions[i] = toColumnKey(relativePositions[i]);
+		}
+
+		Arrays.sort(relativePositions);
+
+		final ByteArrayList out = new ByteArrayList(count / 4 + 5);
+		writeVarInt(out, count);
+
+		int last = 0;
+		int i = 0;
+
+		while (i < count) {
+			final int start = relativePositions[i];
+			int end = start;
+
+			while (++i < count && relativePositions[i] == end + 1) {
+				end++;
+			}
+
+			writeVarInt(out, start - last);
+			writeVarInt(out, end - start);
+			last = end;
+		}
+
+		return out.toByteArray();
+	}
+
+	static int[] decodeColumns(byte[] bytes) {
+		if (bytes.length == 0) {
+			return new int[0];
+		}
+
+		final int[] cursor = new int[1];
+		final int count = readVarInt(bytes, cursor);
+		final IntArrayList result = new IntArrayList(count);
+
+		int last = 0;
+
+		while (cursor[0] < bytes.length && result.size() < count) {
+			final int start = last + readVarInt(bytes, cursor);
+			final int end = start + readVarInt(bytes, cursor);
+
+			for (int k = start; k <= end; k++) {
+				result.add(fromColumnKey(k));
+			}
+
+			last = end;
+		}
+
+		return result.toIntArray();
+	}
+
+	/** Same fields as RelativePos but with y in the low bits so columns sort together */
+	private static int toColumnKey(int relativePos) {
+		return RelativePos.relativePos(RelativePos.ry(relativePos), RelativePos.rx(relativePos), RelativePos.rz(relativePos));
+	}
+
+	private static int fromColumnKey(int key) {
+		return RelativePos.relativePos(RelativePos.ry(key), RelativePos.rx(key), RelativePos.rz(key));
+	}
+
+	private static void writeVarInt(ByteArrayList out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.add((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+
+		out.add((byte) value);
+	}
+
+	private static int readVarInt(byte[] bytes, int[] cursor) {
+		int result = 0;
+		int shift = 0;
+		byte b;
+
+		do {
+			b = bytes[cursor[0]++];
+			result |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+
+		return result;
+	}
+}
@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+import net.minecraft.world.chunk.light.LightingProvider;
+
+/**
+ * Collects block changes made during one heart tick and applies them
+ * section-by-section at the end of the tick. Each section is fetched once
+ * and written directly, light is only re-checked where opacity or luminance
+ * actually changes, and client updates go through the chunk holder so each
+ * chunk sends a single delta packet per tick. Listener, neighbor and shape
+ * updates follow the flags as vanilla does.<p>
+ *
+ * Changes to or from blocks with block entities fall back to a normal world update.
+ * Positions written in one batch should be distinct - reads don't see pending writes.
+ */
+class SectionWriter {
+	/** Same meaning as vanilla block update flags */
+	static final int NOTIFY_NEIGHBORS = 1;
+	static final int NOTIFY_LISTENERS = 2;
+	static final int SKIP_SHAPE_UPDATES = 16;
+
+	private static final Heightmap.Type[] HEIGHTMAPS = {
+		Heightmap.Type.MOTION_BLOCKING,
+		Heightmap.Type.MOTION_BLOCKING_NO_LEAVES,
+		Heightmap.Type.OCEAN_FLOOR,
+		Heightmap.Type.WORLD_SURFACE
+	};
+
+	private static class Batch {
+		private long sectionKey;
+		private int size;
+		private short[] positions = new short[64];
+		private BlockState[] states = new BlockState[64];
+		private byte[] flags = new byte[64];
+
+		private void add(BlockPos pos, BlockState state, int flag) {
+			if (size == positions.length) {
+				final int newSize = size * 2;
+				final short[] newPositions = new short[newSize];
+				final BlockState[] newStates = new BlockState[newSize];
+				final byte[] newFlags = new byte[newSize];
+				System.arraycopy(positions, 0, newPositions, 0, size);
+				System.arraycopy(states, 0, newStates, 0, size);
+				System.arraycopy(flags, 0, newFlags, 0, size);
+				positions = newPositions;
+				states = newStates;
+				flags = newFlags;
+			}
+
+			positions[size] = (short) ((pos.getX() & 15) | ((pos.getZ() & 15) << 4) | ((pos.getY() & 15) << 8));
+			states[size] = state;
+			flags[size] = (byte) flag;
+			size++;
+		}
+
+		private void clear() {
+			for (int i = 0; i < size; i++) {
+				states[i] = null;
+			}
+
+			size = 0;
+		}
+	}
+
+	private final Long2ObjectOpenHashMap<Batch> batches = new Long2ObjectOpenHashMap<>();
+	private final ObjectArrayList<Batch> spares = new ObjectArrayList<>();
+	private final BlockPos.Mutable mPos = new BlockPos.Mutable();
+
+	private int writeCount = 0;
+
+	void setBlockState(BlockPos pos, BlockState state, int flags) {
+		final long key = BlockPos.asLong(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4);
+		Batch batch = batches.get(key);
+
+		if (batch == null) {
+			batch = spares.isEmpty() ? new Batch() : spares.pop();
+			batch.sectionKey = key;
+			batches.put(key, batch);
+		}
+
+		batch.add(pos, state, flags);
+	}
+
+	boolean isEmpty() {
+		return batches.isEmpty();
+	}
+
+	/** Total blocks written since created - for instrumentation */
+	int writeCount() {
+		return writeCount;
+	}
+
+	/** Drops pending writes without applying them */
+	void clear() {
+		for (final Batch batch : batches.values()) {
+			batch.clear();
+			spares.add(batch);
+		}
+
+		batches.clear();
+	}
+
+	void flush(TreeWorld world) {
+		if (world instanceof LiveTreeWorld) {
+			flush(((LiveTreeWorld) world).world);
+			return;
+		}
+
+		// stand-in worlds get each write replayed in order
+		for (final Batch batch : batches.values()) {
+			final long key = batch.sectionKey;
+			final int x = BlockPos.unpackLongX(key) << 4;
+			final int y = BlockPos.unpackLongY(key) << 4;
+			final int z = BlockPos.unpackLongZ(key) << 4;
+
+			for (int i = 0; i < batch.size; i++) {
+				final int p = batch.positions[i];
+				mPos.set(x | (p & 15), y | ((p >> 8) & 15), z | ((p >> 4) & 15));
+				world.setBlockState(mPos, batch.states[i], batch.flags[i]);
+				++writeCount;
+			}
+		}
+
+		clear();
+	}
+
+	void flush(World world) {
+		if (batches.isEmpty()) {
+			return;
+		}
+
+		for (final Batch batch : batches.values()) {
+			apply(world, batch);
+			batch.clear();
+			spares.add(batch);
+		}
+
+		batches.clear();
+	}
+
+	@SuppressWarnings("resource")
+	private void apply(World world, Batch batch) {
+		final long key = batch.sectionKey;
+		final int sx = BlockPos.unpackLongX(key);
+		final int sy = BlockPos.unpackLongY(key);
+		final int sz = BlockPos.unpackLongZ(key);
+		final BlockPos.Mutable mPos = this.mPos;
+
+		if (sy < 0 || sy > 15 || !world.isChunkLoaded(mPos.set(sx << 4, sy << 4, sz << 4))) {
+			return;
+		}
+
+		final WorldChunk chunk = world.getChunk(sx, sz);
+		final ChunkSection[] sections = chunk.getSectionArray();
+		ChunkSection section = sections[sy];
+
+		if (section == WorldChunk.EMPTY_SECTION) {
+			section = new ChunkSection(sy << 4);
+			sections[sy] = section;
+		}
+
+		final boolean wasEmpty = section.isEmpty();
+		final LightingProvider light = world.getChunkManager().getLightingProvider();
+		final int limit = batch.size;
+		final short[] positions = batch.positions;
+		final BlockState[] states = batch.states;
+		final byte[] flags = batch.flags;
+		boolean didChange = false;
+
+		for (int i = 0; i < limit; i++) {
+			final int p = positions[i];
+			final int lx = p & 15;
+			final int lz = (p >> 4) & 15;
+			final int ly = (p >> 8) & 15;
+			final BlockState state = states[i];
+
+			mPos.set((sx << 4) | lx, (sy << 4) | ly, (sz << 4) | lz);
+
+			final BlockState oldState = section.getBlockState(lx, ly, lz);
+
+			if (oldState == state) {
+				continue;
+			}
+
+			if (oldState.getBlock().hasBlockEntity() || state.getBlock().hasBlockEntity()) {
+				world.setBlockState(mPos, state, flags[i]);
+				++writeCount;
+				continue;
+			}
+
+			section.setBlockState(lx, ly, lz, state);
+
+			for (final Heightmap.Type type : HEIGHTMAPS) {
+				chunk.getHeightmap(type).trackUpdate(lx, mPos.getY(), lz, state);
+			}
+
+			oldState.onBlockRemoved(world, mPos, state, false);
+			state.onBlockAdded(world, mPos, oldState, false);
+
+			if (state.getOpacity(world, mPos) != oldState.getOpacity(world, mPos)
+					|| state.getLuminance() != oldState.getLuminance()
+					|| state.hasSidedTransparency() || oldState.hasSidedTransparency()) {
+				light.checkBlock(mPos);
+			}
+
+			// same follow-up as World.setBlockState
+			final int flag = flags[i];
+
+			if ((flag & NOTIFY_LISTENERS) != 0) {
+				world.updateListeners(mPos, oldState, state, flag);
+			}
+
+			if ((flag & NOTIFY_NEIGHBORS) != 0) {
+				world.updateNeighbors(mPos, oldState.getBlock());
+
+				if (state.hasComparatorOutput()) {
+					world.updateHorizontalAdjacent(mPos, state.getBlock());
+				}
+			}
+
+			if ((flag & SKIP_SHAPE_UPDATES) == 0) {
+				final int shapeFlags = flag & ~NOTIFY_NEIGHBORS;
+				oldState.prepare(world, mPos, shapeFlags);
+				state.updateNeighborStates(world, mPos, shapeFlags);
+				state.prepare(world, mPos, shapeFlags);
+			}
+
+			world.onBlockChanged(mPos, oldState, state);
+
+			didChange = true;
+			++writeCount;
+		}
+
+		if (didChange) {
+			chunk.setShouldSave(true);
+
+			if (wasEmpty != section.isEmpty()) {
+				light.updateSectionStatus(mPos.set(sx << 4, sy << 4, sz << 4), section.isEmpty());
+			}
+		}
+	}
+}
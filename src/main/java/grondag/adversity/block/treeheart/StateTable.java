@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.FluidBlock;
+import net.minecraft.block.Material;
+import net.minecraft.block.PillarBlock;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.resource.ResourceType;
+import net.minecraft.tag.BlockTags;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.BlockView;
+import net.minecraft.world.EmptyBlockView;
+
+import net.fabricmc.fabric.api.resource.ResourceManagerHelper;
+import net.fabricmc.fabric.api.resource.ResourceReloadListenerKeys;
+import net.fabricmc.fabric.api.resource.SimpleSynchronousResourceReloadListener;
+
+import grondag.adversity.Adversity;
+import grondag.adversity.registry.AdversityBlockStates;
+import grondag.adversity.registry.AdversityBlocks;
+import grondag.adversity.registry.AdversityTags;
+
+/**
+ * Troll targets and replaceability for every block state, by raw state id.
+ * Both depend on tags, so the table is rebuilt after each data reload.
+ * Blocks with dynamic shapes can't know opacity without a position - those
+ * states fall back to the positional check.
+ */
+public enum StateTable {
+	;
+
+	private static final byte REPLACEABLE = 1;
+	private static final byte POSITIONAL = 2;
+
+	private static class Table {
+		/** Null if the state is left as is */
+		final BlockState[] targets;
+		final byte[] flags;
+
+		Table(int size) {
+			targets = new BlockState[size];
+			flags = new byte[size];
+		}
+	}
+
+	private static volatile Table table = null;
+
+	public static void register() {
+		ResourceManagerHelper.get(ResourceType.SERVER_DATA).registerReloadListener(new SimpleSynchronousResourceReloadListener() {
+			private final Identifier id = Adversity.REG.id("state_table");
+
+			@Override
+			public Identifier getFabricId() {
+				return id;
+			}
+
+			@Override
+			public Collection<Identifier> getFabricDependencies() {
+				return Collections.singletonList(ResourceReloadListenerKeys.TAGS);
+			}
+
+			@Override
+			public void apply(ResourceManager manager) {
+				table = build();
+			}
+		});
+	}
+
+	private static Table table() {
+		Table result = table;
+
+		if (result == null) {
+			result = build();
+			table = result;
+		}
+
+		return result;
+	}
+
+	private static Table build() {
+		int size = 0;
+
+		for (final BlockState state : Block.STATE_IDS) {
+			size = Math.max(size, Block.getRawIdFromState(state) + 1);
+		}
+
+		final Table result = new Table(size);
+
+		for (final BlockState state : Block.STATE_IDS) {
+			final int id = Block.getRawIdFromState(state);
+
+			if (computeCanReplace(state)) {
+				result.flags[id] |= REPLACEABLE;
+			}
+
+			if (state.getBlock().hasDynamicBounds()) {
+				result.flags[id] |= POSITIONAL;
+			} else {
+				result.targets[id] = computeTrollTarget(EmptyBlockView.INSTANCE, state, BlockPos.ORIGIN);
+			}
+		}
+
+		return result;
+	}
+
+	static boolean canReplace(BlockState state) {
+		final Table t = table();
+		final int id = Block.getRawIdFromState(state);
+		return id >= 0 && id < t.flags.length ? (t.flags[id] & REPLACEABLE) != 0 : computeCanReplace(state);
+	}
+
+	/** State the troll converts the given state into, or null if it is left as is */
+	static BlockState trollTarget(BlockView world, BlockState state, BlockPos pos) {
+		final Table t = table();
+		final int id = Block.getRawIdFromState(state);
+
+		if (id >= 0 && id < t.flags.length && (t.flags[id] & POSITIONAL) == 0) {
+			return t.targets[id];
+		}
+
+		return computeTrollTarget(world, state, pos);
+	}
+
+	private static boolean computeCanReplace(BlockState blockState) {
+		return blockState.isAir()
+				|| blockState == AdversityBlockStates.MIASMA_STATE
+				|| blockState == AdversityBlockStates.LEAF_STATE
+				|| blockState == AdversityBlockStates.GLEAM_STATE
+				|| !blockState.getBlock().matches(AdversityTags.PROTECTED_BLOCKS);
+	}
+
+	/** Null if the block should be left as is - flowing fluid, blocked or already trolled */
+	private static BlockState computeTrollTarget(BlockView world, BlockState currentState, BlockPos pos) {
+		final FluidState fluidState = currentState.getFluidState();
+
+		if (!(fluidState.isEmpty() || fluidState.isStill())) {
+			return null;
+		}
+
+		final BlockState trollState = trollState(world, currentState, pos);
+		return trollState == currentState ? null : trollState;
+	}
+
+	private static BlockState trollState(BlockView world, BlockState fromState, BlockPos pos) {
+		final Block block = fromState.getBlock();
+
+		if (block == Blocks.BEDROCK || block.matches(AdversityTags.IGNORED_BLOCKS)) {
+			return fromState;
+		}
+
+		final Material material = fromState.getMaterial();
+
+		if (material.isLiquid() && block instanceof FluidBlock) {
+			final FluidState fluidState = fromState.getFluidState();
+			if (fluidState != null) {
+				if (fluidState.isStill()) {
+					if (material == Material.LAVA) {
+						return AdversityBlockStates.DOOMED_STONE_STATE;
+					} else {
+						return AdversityBlocks.ICHOR_BLOCK.getDefaultState();
+					}
+				}
+			} else {
+				return fromState;
+			}
+		}
+
+		if (computeCanReplace(fromState)) {
+			if (block.matches(BlockTags.LOGS) && fromState.contains(PillarBlock.AXIS)) {
+				return AdversityBlockStates.DOOMED_LOG_STATE.with(PillarBlock.AXIS, fromState.get(PillarBlock.AXIS));
+			} else if (block.isFullOpaque(fromState, world, pos)) {
+				if (material == Material.STONE) {
+					return AdversityBlockStates.DOOMED_STONE_STATE;
+				} else if (material == Material.EARTH) {
+					return AdversityBlockStates.DOOMED_EARTH_STATE;
+				} else {
+					return AdversityBlockStates.DOOMED_DUST_STATE;
+				}
+			}
+
+			return AdversityBlockStates.MIASMA_STATE;
+		}
+
+		return fromState;
+	}
+}
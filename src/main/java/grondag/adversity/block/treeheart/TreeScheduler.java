@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import net.minecraft.server.MinecraftServer;
+
+import grondag.adversity.AdversityConfig;
+
+/**
+ * Hands each ticking doom heart a slice of wall-clock time per server tick.
+ * The total budget tracks server load: it drops as soon as average tick time
+ * approaches the 50ms target and recovers gradually when there is headroom.
+ * Jobs check {@link DoomHeartBlockEntity#hasTime()} and yield when the slice is gone.
+ */
+public enum TreeScheduler {
+	;
+
+	private static final long TARGET_TICK_NANOS = 50_000_000L;
+
+	/** Floor so that hearts always make some progress, even on an overloaded server */
+	static final long MIN_SLICE_NANOS = 50_000L;
+
+	private static long budgetNanos = AdversityConfig.TREE_TICK_BUDGET_NANOS;
+	private static int activeCount = 0;
+	private static int lastActiveCount = 1;
+
+	/** Call at end of each server tick to size the budget for the next tick */
+	public static void onServerTick(MinecraftServer server) {
+		final long tickNanos = (long) (server.getTickTime() * 1_000_000L);
+
+		// never plan to use more than half the remaining headroom
+		final long target = Math.max(0, Math.min(AdversityConfig.TREE_TICK_BUDGET_NANOS, (TARGET_TICK_NANOS - tickNanos) / 2));
+
+		// back off immediately, recover slowly
+		budgetNanos = target < budgetNanos ? target : budgetNanos + (target - budgetNanos) / 8;
+
+		lastActiveCount = Math.max(1, activeCount);
+		activeCount = 0;
+	}
+
+	/** Nanoseconds the calling heart may use this tick - call once per heart tick */
+	static long slice() {
+		activeCount++;
+		return Math.max(MIN_SLICE_NANOS, budgetNanos / lastActiveCount);
+	}
+
+	static long budgetNanos() {
+		return budgetNanos;
+	}
+}
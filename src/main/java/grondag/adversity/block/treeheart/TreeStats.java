@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.mojang.brigadier.CommandDispatcher;
+
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.LiteralText;
+import net.minecraft.util.Util;
+import net.minecraft.world.dimension.DimensionType;
+
+import net.fabricmc.fabric.api.registry.CommandRegistry;
+
+import grondag.adversity.Adversity;
+import grondag.adversity.AdversityConfig;
+import grondag.adversity.block.treeheart.DoomTreeState.TreeData;
+import grondag.adversity.block.treeheart.HeartMetrics.Phase;
+
+/**
+ * Reports what each doom heart is doing: through {@code /adversity stats}
+ * and periodically as CSV (appended) and JSON (latest only) in the
+ * adversity folder of the world save. Unloaded hearts show their last saved state.
+ */
+public enum TreeStats {
+	;
+
+	private static int ticks = 0;
+
+	public static void registerCommands() {
+		CommandRegistry.INSTANCE.register(false, TreeStats::register);
+	}
+
+	private static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+		dispatcher.register(CommandManager.literal(Adversity.MOD_ID)
+			.requires(s -> s.hasPermissionLevel(2))
+			.then(CommandManager.literal("stats").executes(c -> {
+				final ServerCommandSource source = c.getSource();
+				final List<Row> rows = collect(source.getMinecraftServer());
+
+				source.sendFeedback(new LiteralText(String.format(Locale.ROOT, "%d doom trees, tree budget %.2f ms/tick", rows.size(), TreeScheduler.budgetNanos() / 1_000_000.0)), false);
+
+				for (final Row r : rows) {
+					source.sendFeedback(new LiteralText(r.describe()), false);
+				}
+
+				return rows.size();
+			})));
+	}
+
+	public static void onServerTick(MinecraftServer server) {
+		final int interval = AdversityConfig.TREE_STATS_INTERVAL_TICKS;
+
+		if (interval == 0 || ++ticks < interval) {
+			return;
+		}
+
+		ticks = 0;
+
+		final List<Row> rows = collect(server);
+
+		if (rows.isEmpty()) {
+			return;
+		}
+
+		final long time = System.currentTimeMillis();
+		final StringBuilder csv = new StringBuilder();
+		final StringBuilder json = new StringBuilder("{\"time\":").append(time).append(",\"trees\":[");
+
+		for (int i = 0; i < rows.size(); i++) {
+			final Row r = rows.get(i);
+			r.appendCsv(csv, time);
+
+			if (i > 0) {
+				json.append(',');
+			}
+
+			r.appendJson(json);
+		}
+
+		json.append("]}\n");
+
+		final File dir = new File(server.getWorld(DimensionType.OVERWORLD).getSaveHandler().getWorldDir(), Adversity.MOD_ID);
+
+		// file IO stays off the server thread
+		Util.getServerWorkerExecutor().execute(() -> write(dir, csv.toString(), json.toString()));
+	}
+
+	private static void write(File dir, String csv, String json) {
+		try {
+			dir.mkdirs();
+			final File csvFile = new File(dir, "tree_stats.csv");
+
+			if (!csvFile.exists()) {
+				Files.write(csvFile.toPath(), (Row.CSV_HEADER + "\n").getBytes(StandardCharsets.UTF_8));
+			}
+
+			Files.write(csvFile.toPath(), csv.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+			Files.write(new File(dir, "tree_stats.json").toPath(), json.getBytes(StandardCharsets.UTF_8));
+		} catch (final IOException e) {
+			Adversity.LOG.warn("[Adversity] Unable to write doom tree stats", e);
+		}
+	}
+
+	static List<Row> collect(MinecraftServer server) {
+		final ArrayList<Row> result = new ArrayList<>();
+
+		for (final ServerWorld world : server.getWorlds()) {
+			final String dimension = DimensionType.getId(world.getDimension().getType()).toString();
+
+			for (final TreeData tree : DoomTreeState.get(world).trees()) {
+				DoomHeartBlockEntity heart = null;
+
+				if (world.isChunkLoaded(tree.pos)) {
+					final BlockEntity be = world.getBlockEntity(tree.pos);
+
+					if (be instanceof DoomHeartBlockEntity) {
+						heart = (DoomHeartBlockEntity) be;
+					}
+				}
+
+				result.add(heart == null ? new Row(dimension, tree) : new Row(dimension, heart));
+			}
+		}
+
+		return result;
+	}
+
+	static String jobName(DoomHeartBlockEntity heart) {
+		// BuildPopulator is the only job
+		if (heart.job != null) {
+			return "populating";
+		} else if (heart.builds == null || heart.logs == null) {
+			return "starting";
+		} else if (!heart.builds.isEmpty() || (heart.branches != null && !heart.branches.isEmpty())) {
+			return "building";
+		} else if (heart.logs.hasBranches()) {
+			return "leafing";
+		} else {
+			return "trolling";
+		}
+	}
+
+	static class Row {
+		static final String CSV_HEADER;
+
+		static {
+			final StringBuilder header = new StringBuilder("time,dimension,x,y,z,loaded,power,trunk_queue,branch_queue,troll_queue,job,converted,logs_placed,leaves_placed,harvested,avg_us");
+
+			for (final Phase p : Phase.VALUES) {
+				header.append(',').append(p.name().toLowerCase(Locale.ROOT)).append("_us");
+			}
+
+			CSV_HEADER = header.toString();
+		}
+
+		final String dimension;
+		final int x, y, z;
+		final boolean loaded;
+		final long power;
+		final int trunkQueue, branchQueue, trollQueue;
+		final String job;
+		final long converted, logsPlaced, leavesPlaced, harvested;
+		final double averageMicros;
+		final Phase topPhase;
+		final double[] phaseMicros = new double[Phase.VALUES.length];
+
+		Row(String dimension, TreeData tree) {
+			this.dimension = dimension;
+			x = tree.pos.getX();
+			y = tree.pos.getY();
+			z = tree.pos.getZ();
+			loaded = false;
+			power = tree.power;
+			trunkQueue = tree.buildCount;
+			branchQueue = tree.branchCount;
+			trollQueue = tree.trollCount;
+			job = "unloaded";
+			converted = logsPlaced = leavesPlaced = harvested = 0;
+			averageMicros = 0;
+			topPhase = null;
+		}
+
+		Row(String dimension, DoomHeartBlockEntity heart) {
+			this.dimension = dimension;
+			x = heart.getPos().getX();
+			y = heart.getPos().getY();
+			z = heart.getPos().getZ();
+			loaded = true;
+			power = heart.power;
+			trunkQueue = heart.builds == null ? 0 : heart.builds.size();
+			branchQueue = heart.branches == null ? 0 : heart.branches.size();
+			trollQueue = heart.troll == null ? 0 : heart.troll.size();
+			job = jobName(heart);
+
+			final HeartMetrics m = heart.metrics;
+			converted = m.blocksConverted;
+			logsPlaced = m.logsPlaced;
+			leavesPlaced = m.leavesPlaced;
+			harvested = m.entitiesHarvested;
+			averageMicros = m.averageNanos() / 1000;
+			topPhase = m.topPhase();
+
+			for (final Phase p : Phase.VALUES) {
+				phaseMicros[p.ordinal()] = m.averageNanos(p) / 1000;
+			}
+		}
+
+		String describe() {
+			final StringBuilder result = new StringBuilder();
+			result.append(String.format(Locale.ROOT, "%s %d,%d,%d %s power=%d queues=%d/%d/%d",
+				dimension, x, y, z, job, power, trunkQueue, branchQueue, trollQueue));
+
+			if (loaded) {
+				result.append(String.format(Locale.ROOT, " converted=%d logs=%d leaves=%d harvested=%d %.1fus/tick (%s %.1fus)",
+					converted, logsPlaced, leavesPlaced, harvested, averageMicros,
+					topPhase.name().toLowerCase(Locale.ROOT), phaseMicros[topPhase.ordinal()]));
+			}
+
+			return result.toString();
+		}
+
+		void appendCsv(StringBuilder out, long time) {
+			out.append(time).append(',').append(dimension).append(',').append(x).append(',').append(y).append(',').append(z)
+			.append(',').append(loaded).append(',').append(power)
+			.append(',').append(trunkQueue).append(',').append(branchQueue).append(',').append(trollQueue)
+			.append(',').append(job).append(',').append(converted).append(',').append(logsPlaced)
+			.append(',').append(leavesPlaced).append(',').append(harvested)
+			.append(',').append(String.format(Locale.ROOT, "%.1f", averageMicros));
+
+			for (final double p : phaseMicros) {
+				out.append(',').append(String.format(Locale.ROOT, "%.1f", p));
+			}
+
+			out.append('\n');
+		}
+
+		void appendJson(StringBuilder out) {
+			out.append("{\"dimension\":\"").append(dimension).append("\",\"x\":").append(x).append(",\"y\":").append(y).append(",\"z\":").append(z)
+			.append(",\"loaded\":").append(loaded).append(",\"power\":").append(power)
+			.append(",\"trunkQueue\":").append(trunkQueue).append(",\"branchQueue\":").append(branchQueue).append(",\"trollQueue\":").append(trollQueue)
+			.append(",\"job\":\"").append(job).append("\",\"converted\":").append(converted).append(",\"logsPlaced\":").append(logsPlaced)
+			.append(",\"leavesPlaced\":").append(leavesPlaced).append(",\"harvested\":").append(harvested)
+			.append(",\"avgMicros\":").append(String.format(Locale.ROOT, "%.1f", averageMicros))
+			.append(",\"phaseMicros\":{");
+
+			for (final Phase p : Phase.VALUES) {
+				if (p.ordinal() > 0) {
+					out.append(',');
+				}
+
+				out.append('"').append(p.name().toLowerCase(Locale.ROOT)).append("\":").append(String.format(Locale.ROOT, "%.1f", phaseMicros[p.ordinal()]));
+			}
+
+			out.append("}}");
+		}
+	}
+}
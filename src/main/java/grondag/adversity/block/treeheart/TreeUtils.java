@@ -27,12 +27,10 @@ import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.MathHelper;
-import net.minecraft.world.Heightmap.Type;
-import net.minecraft.world.IWorld;
+import net.minecraft.world.BlockView;
 
 import grondag.adversity.block.tree.DoomLogBlock;
 import grondag.adversity.registry.AdversityBlockStates;
-import grondag.adversity.registry.AdversityTags;
 
 public enum TreeUtils {
 	;
@@ -44,16 +42,12 @@ public enum TreeUtils {
 	static final int MAX_GEN_HEIGHT = 64;
 
 
-	static boolean canReplace(final IWorld world, final BlockPos pos) {
+	static boolean canReplace(final BlockView world, final BlockPos pos) {
 		return canReplace(world.getBlockState(pos));
 	}
 
 	static boolean canReplace(final BlockState blockState) {
-		return blockState.isAir()
-				|| blockState == AdversityBlockStates.MIASMA_STATE
-				|| blockState == AdversityBlockStates.LEAF_STATE
-				|| blockState == AdversityBlockStates.GLEAM_STATE
-				|| !blockState.getBlock().matches(AdversityTags.PROTECTED_BLOCKS);
+		return StateTable.canReplace(blockState);
 	}
 
 	static int DISTANCES[] = new int[64];
@@ -97,10 +91,11 @@ public enum TreeUtils {
 		return AdversityBlockStates.LOG_STATE.with(DoomLogBlock.HEIGHT, MathHelper.clamp(dy, 0, DoomLogBlock.MAX_HEIGHT));
 	}
 
-	static boolean placeTrunkSection(final IWorld world, final LongArrayList blocks, final BlockPos.Mutable pos, final int height) {
+	/** Snapshot must include MOTION_BLOCKING_NO_LEAVES heights. Safe to call off-thread. */
+	static boolean placeTrunkSection(final ChunkSnapshot world, final LongArrayList blocks, final BlockPos.Mutable pos, final int height) {
 		final int x = pos.getX();
 		final int z = pos.getZ();
-		final int limit = world.getTopY(Type.MOTION_BLOCKING_NO_LEAVES, x, z);
+		final int limit = world.getTopY(x, z);
 		for (int y = 0; y <= height; y++) {
 			pos.setY(y);
 
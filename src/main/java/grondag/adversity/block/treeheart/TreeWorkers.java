@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background threads for tree planning that only reads snapshots.
+ * Thread count can be set with -Dadversity.treeWorkers=n. Zero runs
+ * planning on the calling thread, which makes growth deterministic.
+ */
+enum TreeWorkers {
+	;
+
+	private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+	private static final ThreadFactory FACTORY = r -> {
+		final Thread thread = new Thread(r, "Adversity Tree Worker " + NEXT_ID.incrementAndGet());
+		thread.setDaemon(true);
+		thread.setPriority(Thread.NORM_PRIORITY - 1);
+		return thread;
+	};
+
+	static final int THREAD_COUNT = Integer.getInteger("adversity.treeWorkers", Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+	static final Executor EXECUTOR = THREAD_COUNT <= 0 ? Runnable::run : Executors.newFixedThreadPool(THREAD_COUNT, FACTORY);
+}
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.block.treeheart;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.BlockView;
+import net.minecraft.world.Heightmap;
+
+import grondag.fermion.position.PackedBlockPosList;
+
+/**
+ * Block access needed by tree growth. Normally backed by the heart's world
+ * but lets growth code run against an in-memory stand-in for benchmarks.
+ */
+interface TreeWorld extends BlockView {
+	/** True for valid positions in loaded chunks */
+	boolean isLoaded(BlockPos pos);
+
+	void setBlockState(BlockPos pos, BlockState state, int flags);
+
+	long getTime();
+
+	/** Null if the chunk isn't loaded. Heights are only captured if a type is given. */
+	@Nullable
+	ChunkSnapshot snapshot(int chunkX, int chunkZ, int minY, int maxY, @Nullable Heightmap.Type heightType);
+
+	/** Adds entities the tree can doom within the given column slab */
+	void collectDoomable(int x, int y, int z, int height, List<Entity> targets);
+
+	/** Sends doom/ichor/miasma changes to nearby players */
+	void sendReports(PackedBlockPosList reports);
+
+	void spawnMobs(DoomHeartBlockEntity heart);
+}
@@ -22,39 +22,35 @@
 package grondag.adversity.block.treeheart;
 
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 
 import it.unimi.dsi.fastutil.HashCommon;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.ints.IntHeapPriorityQueue;
-import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
-import net.minecraft.block.Blocks;
-import net.minecraft.block.FluidBlock;
-import net.minecraft.block.Material;
-import net.minecraft.block.PillarBlock;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.LivingEntity;
-import net.minecraft.fluid.FluidState;
-import net.minecraft.tag.BlockTags;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.Box;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.GameRules;
 import net.minecraft.world.GameRules.BooleanRule;
 import net.minecraft.world.World;
-import net.minecraft.world.chunk.WorldChunk;
 
+import grondag.adversity.Adversity;
 import grondag.adversity.entity.DoomEffect;
+import grondag.adversity.jfr.AdversityJfr;
+import grondag.adversity.jfr.Span;
 import grondag.adversity.packet.DoomS2C;
 import grondag.adversity.registry.AdversityBlockStates;
 import grondag.adversity.registry.AdversityBlocks;
 import grondag.adversity.registry.AdversityEffects;
-import grondag.adversity.registry.AdversityTags;
 import grondag.fermion.position.PackedBlockPos;
 import grondag.fermion.position.PackedBlockPosList;
 
-class Troll extends IntHeapPriorityQueue {
+class Troll extends DistanceQueue {
 	private static final int MAX_INDEX;
 	private static final int[] OFFSETS;
 
@@ -83,7 +79,6 @@ class Troll extends IntHeapPriorityQueue {
 
 	private final int maxY;
 
-	private final IntOpenHashSet set = new IntOpenHashSet();
 	private final ArrayList<Entity> targets =  new ArrayList<>();
 	private final PackedBlockPosList reports  = new PackedBlockPosList();
 
@@ -91,7 +86,7 @@ class Troll extends IntHeapPriorityQueue {
 	int index;
 
 	Troll(BlockPos origin) {
-		super((i0, i1) -> Integer.compare(RelativePos.squaredDistance(i0), RelativePos.squaredDistance(i1)));
+		super(true);
 
 		originX = origin.getX();
 		originY = origin.getY();
@@ -108,21 +103,13 @@ class Troll extends IntHeapPriorityQueue {
 		enqueue(RelativePos.relativePos(originX, originY, originZ, pos));
 	}
 
-	@Override
-	public void enqueue(int relativePos) {
-		if (set.add(relativePos)) {
-			super.enqueue(relativePos);
-		}
-	}
-
-	@Override
-	public int dequeueInt() {
-		final int result = super.dequeueInt();
-		set.remove(result);
-		return result;
-	}
+	/** Positions examined in the current pass, for profiling */
+	private int touched;
 
 	void troll(DoomHeartBlockEntity heart) {
+		final Span span = AdversityJfr.troll();
+		final long converted = heart.metrics.blocksConverted;
+		touched = 0;
 		reports.clear();
 		targets.clear();
 
@@ -133,11 +120,28 @@ class Troll extends IntHeapPriorityQueue {
 		}
 
 		if (!reports.isEmpty()) {
-			DoomS2C.send(heart.getWorld(), reports);
+			heart.treeWorld().sendReports(reports);
 		}
+
+		span.finish(touched, (int) (heart.metrics.blocksConverted - converted), 0);
 	}
 
+	/** Column sections trolled per tick at most, even on an idle server */
+	private static final int MAX_SLABS = 64;
+
+	/** Queued positions always trolled per tick so repairs continue on a busy server */
+	private static final int MIN_QUEUE = 4;
+
 	private void trollNext(DoomHeartBlockEntity heart) {
+		int i = 0;
+
+		while (trollSlab(heart) && ++i < MAX_SLABS && heart.hasTime()) {
+			// NOOP
+		}
+	}
+
+	/** Returns false if the column plan isn't ready yet */
+	private boolean trollSlab(DoomHeartBlockEntity heart) {
 		if (y >= maxY) {
 			y = 0;
 			index++;
@@ -148,72 +152,203 @@ class Troll extends IntHeapPriorityQueue {
 			index = 0;
 		}
 
-		final int offset = OFFSETS[index];
-		final int x = RelativePos.rx(offset);
-		final int z = RelativePos.rz(offset);
+		final TreeWorld world = heart.treeWorld();
+		final ColumnPlan plan = plan(world, index);
 
+		if (plan == null) {
+			return false;
+		}
+
+		final int offset = OFFSETS[index];
+		final int px = originX + RelativePos.rx(offset);
+		final int pz = originZ + RelativePos.rz(offset);
 		final BlockPos.Mutable mPos = heart.mPos;
-		final World world = heart.getWorld();
+		final int limit = y + 16;
 
-		for (int i = 0; i < 16; i++) {
-			trollBlock(world, mPos, heart, RelativePos.relativePos(x, -originY + y + i, z));
+		// skip anything the plan has below us - can happen after reload
+		while (plan.cursor < plan.size() && plan.ys.getInt(plan.cursor) < y) {
+			plan.cursor++;
 		}
 
-		final int px = originX + x;
-		final int pz = originZ + z;
-		final WorldChunk chunk  = world.getWorldChunk(mPos.set(px, y, pz));
+		while (plan.cursor < plan.size() && plan.ys.getInt(plan.cursor) < limit) {
+			final int i = plan.cursor++;
+			mPos.set(px, plan.ys.getInt(i), pz);
+
+			if (world.isLoaded(mPos)) {
+				// snapshot may be stale - anything changed since will be seen next pass
+				final BlockState currentState = world.getBlockState(mPos);
 
-		if (chunk != null) {
-			chunk.getEntities((Entity)null, new Box(px, y, pz, px + 1, y + 16, pz + 1), targets, e -> DoomEffect.canDoom(e));
+				if (currentState == plan.fromStates.get(i)) {
+					convert(heart, mPos, currentState, plan.toStates.get(i));
+				}
+			}
 		}
 
-		doDamage(world);
+		world.collectDoomable(px, y, pz, 16, targets);
+		doDamage(heart);
 
 		y += 16;
+		touched += 16;
+
+		return true;
+	}
+
+	/** Snapshots older than this are recaptured before planning */
+	private static final int SNAPSHOT_TICKS = 200;
+
+	private final Long2ObjectOpenHashMap<ChunkSnapshot> snapshots = new Long2ObjectOpenHashMap<>();
+	/** Stale snapshots are dropped at most once per expiry period, not on every miss */
+	private long lastEviction = 0;
+	private ColumnPlan currentPlan = null;
+	private CompletableFuture<ColumnPlan> pendingPlan = null;
+	private int pendingIndex = -1;
+
+	/**
+	 * Returns plan for the given column if available, and starts planning the column after it.
+	 * Null means planning is still in progress.
+	 */
+	private ColumnPlan plan(TreeWorld world, int index) {
+		if (currentPlan != null && currentPlan.index == index) {
+			return currentPlan;
+		}
+
+		if (pendingIndex != index) {
+			pendingPlan = submit(world, index);
+			pendingIndex = index;
+		}
+
+		if (!pendingPlan.isDone()) {
+			return null;
+		}
+
+		currentPlan = pendingPlan.join();
+
+		final int nextIndex = index + 1 >= MAX_INDEX ? 0 : index + 1;
+		pendingPlan = submit(world, nextIndex);
+		pendingIndex = nextIndex;
+
+		return currentPlan;
+	}
+
+	private CompletableFuture<ColumnPlan> submit(TreeWorld world, int index) {
+		final int offset = OFFSETS[index];
+		final int px = originX + RelativePos.rx(offset);
+		final int pz = originZ + RelativePos.rz(offset);
+		final ChunkSnapshot snapshot = snapshot(world, px >> 4, pz >> 4);
+
+		if (snapshot == null) {
+			return CompletableFuture.completedFuture(new ColumnPlan(index));
+		}
+
+		final int maxY = this.maxY;
+
+		return CompletableFuture.supplyAsync(() -> planColumn(snapshot, index, px, pz, maxY), TreeWorkers.EXECUTOR).exceptionally(e -> {
+			Adversity.LOG.warn("[Adversity] Unable to plan doom tree column", e);
+			return new ColumnPlan(index);
+		});
+	}
+
+	private ChunkSnapshot snapshot(TreeWorld world, int chunkX, int chunkZ) {
+		final long key = ChunkPos.toLong(chunkX, chunkZ);
+		final long time = world.getTime();
+		ChunkSnapshot result = snapshots.get(key);
+
+		if (result == null || time - result.time > SNAPSHOT_TICKS) {
+			if (time - lastEviction > SNAPSHOT_TICKS) {
+				snapshots.values().removeIf(s -> time - s.time > SNAPSHOT_TICKS);
+				lastEviction = time;
+			}
+
+			result = world.snapshot(chunkX, chunkZ, 0, maxY - 1, null);
+
+			if (result == null) {
+				snapshots.remove(key);
+				return null;
+			}
+
+			snapshots.put(key, result);
+		}
+
+		return result;
 	}
 
+	/** Runs off-thread - must only touch the snapshot */
+	private static ColumnPlan planColumn(ChunkSnapshot snapshot, int index, int x, int z, int maxY) {
+		final ColumnPlan result = new ColumnPlan(index);
+		final BlockPos.Mutable mPos = new BlockPos.Mutable();
+
+		for (int y = 0; y < maxY; y++) {
+			mPos.set(x, y, z);
+			final BlockState currentState = snapshot.getBlockState(mPos);
+			final BlockState trollState = StateTable.trollTarget(snapshot, currentState, mPos);
+
+			if (trollState != null) {
+				result.ys.add(y);
+				result.fromStates.add(currentState);
+				result.toStates.add(trollState);
+			}
+		}
+
+		return result;
+	}
+
+	/** Conversions for a single column, ordered by y */
+	private static class ColumnPlan {
+		final int index;
+		final IntArrayList ys = new IntArrayList();
+		final ObjectArrayList<BlockState> fromStates = new ObjectArrayList<>();
+		final ObjectArrayList<BlockState> toStates = new ObjectArrayList<>();
+		int cursor = 0;
+
+		ColumnPlan(int index) {
+			this.index = index;
+		}
 
+		int size() {
+			return ys.size();
+		}
+	}
 
 	private void trollQueue(DoomHeartBlockEntity heart) {
 		final BlockPos.Mutable mPos = heart.mPos;
-		final World world = heart.getWorld();
+		final TreeWorld world = heart.treeWorld();
 
 		boolean didUpdate = false;
 
-		for (int i = 0; i < 32; i++) {
-			if(isEmpty()) {
-				return;
-			}
+		int i = 0;
 
+		while (!isEmpty() && (i++ < MIN_QUEUE || heart.hasTime())) {
 			didUpdate |= trollBlock(world, mPos, heart, dequeueInt());
 		}
 
+		touched += i;
+
 		if (didUpdate) {
 			heart.resetTickCounter();
 		}
 		heart.markDirty();
 	}
 
-	private boolean trollBlock(World world, BlockPos.Mutable mPos, DoomHeartBlockEntity heart, int pos) {
+	private boolean trollBlock(TreeWorld world, BlockPos.Mutable mPos, DoomHeartBlockEntity heart, int pos) {
 		RelativePos.set(mPos, originX, originY, originZ, pos);
 
-		if (!World.isValid(mPos) || !world.isChunkLoaded(mPos)) {
+		if (!world.isLoaded(mPos)) {
 			return false;
 		}
 
 		final BlockState currentState = world.getBlockState(mPos);
+		final BlockState trollState = StateTable.trollTarget(world, currentState, mPos);
 
-		final FluidState fluidState = currentState.getFluidState();
-		if (!(fluidState.isEmpty() || fluidState.isStill())) {
+		if (trollState == null) {
 			return false;
 		}
 
-		final BlockState trollState = Troll.trollState(world, currentState, mPos);
-
-		if (trollState == null || trollState == currentState) {
-			return false;
-		}
+		convert(heart, mPos, currentState, trollState);
+		return true;
+	}
 
+	private void convert(DoomHeartBlockEntity heart, BlockPos.Mutable mPos, BlockState currentState, BlockState trollState) {
+		heart.metrics.blocksConverted++;
 		final Block newBlock = trollState.getBlock();
 
 		if (!currentState.isAir() && newBlock != AdversityBlocks.ICHOR_BLOCK) {
@@ -221,27 +356,26 @@ class Troll extends IntHeapPriorityQueue {
 		}
 
 		if (newBlock == AdversityBlocks.MIASMA_BLOCK) {
-			placeMiasma(mPos, world);
+			placeMiasma(mPos, heart.writer);
 		} else {
-			world.setBlockState(mPos, trollState, 19);
+			heart.writer.setBlockState(mPos, trollState, 19);
 			reports.add(PackedBlockPos.pack(mPos, newBlock == AdversityBlocks.ICHOR_BLOCK ? DoomS2C.ICHOR : DoomS2C.DOOM));
 		}
-
-		return true;
 	}
 
-	void placeMiasma(BlockPos pos, World world) {
+	void placeMiasma(BlockPos pos, SectionWriter writer) {
 		final BlockState state = (HashCommon.mix(pos.asLong()) & 31) == 0 ? AdversityBlockStates.GLEAM_STATE : AdversityBlockStates.MIASMA_STATE;
-		world.setBlockState(pos, state);
+		writer.setBlockState(pos, state, 3);
 
 		reports.add(PackedBlockPos.pack(pos, DoomS2C.MIASMA));
 	}
 
-	void doDamage(World world) {
+	void doDamage(DoomHeartBlockEntity heart) {
 		if (targets.isEmpty()) {
 			return;
 		}
 
+		final World world = heart.getWorld();
 		final BooleanRule lootRule = world.getGameRules().get(GameRules.DO_MOB_LOOT);
 		final boolean loot = lootRule.get();
 
@@ -257,6 +391,11 @@ class Troll extends IntHeapPriorityQueue {
 		if (loot) {
 			lootRule.set(true, null);
 		}
+
+		heart.metrics.entitiesHarvested += targets.size();
+
+		// several slabs can run per tick - don't harvest the same entities again
+		targets.clear();
 	}
 
 	/**
@@ -274,14 +413,18 @@ class Troll extends IntHeapPriorityQueue {
 		return damage;
 	}
 
-	int[] toIntArray() {
-		final int[] result = new int[size + 2];
-		result[0] = y;
-		result[1] = index;
-		System.arraycopy(heap, 0, result, 2, size);
-		return result;
+	void fromQueue(int y, int index, int[] queue) {
+		clear();
+
+		this.y = y;
+		this.index = index;
+
+		for (final int p : queue) {
+			enqueue(p);
+		}
 	}
 
+	/** Reads heart state saved before {@link PosCodec} */
 	void fromArray(int[] data) {
 		clear();
 
@@ -295,50 +438,4 @@ class Troll extends IntHeapPriorityQueue {
 			}
 		}
 	}
-
-	/**
-	 * Null means can't troll - tendril blocked
-	 */
-	static BlockState trollState(World world, BlockState fromState, BlockPos pos) {
-		final Block block = fromState.getBlock();
-
-		if (block == Blocks.BEDROCK || block.matches(AdversityTags.IGNORED_BLOCKS)) {
-			return fromState;
-		}
-
-		final Material material = fromState.getMaterial();
-
-		if (material.isLiquid() && block instanceof FluidBlock) {
-			final FluidState fluidState = fromState.getFluidState();
-			if (fluidState != null) {
-				if (fluidState.isStill()) {
-					if (material == Material.LAVA) {
-						return AdversityBlockStates.DOOMED_STONE_STATE;
-					} else {
-						return AdversityBlocks.ICHOR_BLOCK.getDefaultState();
-					}
-				}
-			} else {
-				return fromState;
-			}
-		}
-
-		if (TreeUtils.canReplace(fromState)) {
-			if (block.matches(BlockTags.LOGS) && fromState.contains(PillarBlock.AXIS)) {
-				return AdversityBlockStates.DOOMED_LOG_STATE.with(PillarBlock.AXIS, fromState.get(PillarBlock.AXIS));
-			} else if (block.isFullOpaque(fromState, world, pos)) {
-				if (material == Material.STONE) {
-					return AdversityBlockStates.DOOMED_STONE_STATE;
-				} else if (material == Material.EARTH) {
-					return AdversityBlockStates.DOOMED_EARTH_STATE;
-				} else {
-					return AdversityBlockStates.DOOMED_DUST_STATE;
-				}
-			}
-
-			return AdversityBlockStates.MIASMA_STATE;
-		}
-
-		return fromState;
-	}
 }
@@ -23,25 +23,21 @@ package grondag.adversity.block.treeheart;
 
 import static grondag.adversity.block.treeheart.TreeUtils.canReplace;
 
-import it.unimi.dsi.fastutil.ints.IntHeapPriorityQueue;
-import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.world.World;
 
-/** Tracks and builds in log spaces needing placement */
-@SuppressWarnings("serial")
-class TrunkBuilder extends IntHeapPriorityQueue {
-
-	private final IntOpenHashSet set = new IntOpenHashSet();
+import grondag.adversity.jfr.AdversityJfr;
+import grondag.adversity.jfr.Span;
 
+/** Tracks and builds in log spaces needing placement */
+class TrunkBuilder extends DistanceQueue {
 	private final int originX;
 	private final int originY;
 	private final int originZ;
 
 	TrunkBuilder(BlockPos origin) {
-		super((i0, i1) -> Integer.compare(RelativePos.squaredDistance(i0), RelativePos.squaredDistance(i1)));
+		super(true);
 
 		originX = origin.getX();
 		originY = origin.getY();
@@ -56,51 +52,39 @@ class TrunkBuilder extends IntHeapPriorityQueue {
 		enqueue(RelativePos.relativePos(originX, originY, originZ, pos));
 	}
 
-	@Override
-	public void enqueue(int relativePos) {
-		if (set.add(relativePos)) {
-			super.enqueue(relativePos);
-		}
-	}
-
-	@Override
-	public int dequeueInt() {
-		final int result = super.dequeueInt();
-		set.remove(result);
-		return result;
-	}
-
-	static final int PLACE_LIMIT = 16;
-	static final int CHECK_LIMIT = 64;
+	/** Checks always allowed per tick so trunks still repair on a busy server */
+	static final int MIN_CHECKS = 8;
 
 	void build(DoomHeartBlockEntity heart) {
-		final World world = heart.getWorld();
+		final Span span = AdversityJfr.trunkBuild();
+		final TreeWorld world = heart.treeWorld();
 		final BlockPos.Mutable mPos = heart.mPos;
 		int placeCount = 0;
+		int checkCount = 0;
 
-		for (int i = 0; i < CHECK_LIMIT; i++) {
-			if (heart.power >= 50 && !isEmpty()) {
-				mPos.set(RelativePos.absolutePos(originX, originY, originZ, dequeueInt()));
-				final BlockState currentState = world.getBlockState(mPos);
-
-				if(currentState.getBlock() == Blocks.BEDROCK) {
-					continue;
-				}
+		while (heart.power >= 50 && !isEmpty() && (checkCount++ < MIN_CHECKS || heart.hasTime())) {
+			mPos.set(RelativePos.absolutePos(originX, originY, originZ, dequeueInt()));
+			final BlockState currentState = world.getBlockState(mPos);
 
-				final BlockState targetState = TreeUtils.logState(mPos, heart);
+			if(currentState.getBlock() == Blocks.BEDROCK) {
+				continue;
+			}
 
-				if (targetState != currentState && canReplace(world, mPos)) {
-					world.setBlockState(mPos, targetState, 18);
-					heart.power -= 50;
+			final BlockState targetState = TreeUtils.logState(mPos, heart);
 
-					if (++placeCount >= PLACE_LIMIT) break;
-				}
+			if (targetState != currentState && canReplace(world, mPos)) {
+				heart.writer.setBlockState(mPos, targetState, 18);
+				heart.power -= 50;
+				++placeCount;
 			}
 		}
 
 		if (placeCount > 0) {
+			heart.metrics.logsPlaced += placeCount;
 			heart.resetTickCounter();
 		}
+
+		span.finish(checkCount, placeCount, 0);
 	}
 
 	int buildDistanceSquared() {
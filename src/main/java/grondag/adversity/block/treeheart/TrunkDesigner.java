@@ -26,64 +26,134 @@ import static grondag.adversity.block.treeheart.TreeUtils.TRUNK_RADIUS;
 import static grondag.adversity.block.treeheart.TreeUtils.TRUNK_RADIUS_SQUARED;
 import static grondag.adversity.block.treeheart.TreeUtils.placeTrunkSection;
 
-import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.Heightmap.Type;
 import net.minecraft.world.IWorld;
 
+import grondag.adversity.Adversity;
+
+/**
+ * Checks trunk columns in parallel on worker threads against
+ * snapshots of the chunks involved, captured on the first call.
+ */
 public class TrunkDesigner {
+	/** Returns null if the chunk isn't available */
+	interface SnapshotSource {
+		ChunkSnapshot get(int chunkX, int chunkZ, int maxY);
+	}
 
-	final BlockPos.Mutable mPos = new BlockPos.Mutable();
 	private final LongArrayList blocks = new LongArrayList();
-	final IWorld world;
+	private final SnapshotSource snapshots;
 	final int x;
 	final int y;
 	final int z;
 	final int centerHeight;
-	final Random rand = new Random();
 
-	boolean failed = false;
-	int i = -TRUNK_RADIUS;
-	int j = -TRUNK_RADIUS;
+	private CompletableFuture<LongArrayList> future = null;
 
 	public LongArrayList blocks()  {
+		if (future == null || !future.isDone()) {
+			return null;
+		}
+
+		final LongArrayList result = future.join();
+
+		if (result == null) {
+			return null;
+		}
+
+		blocks.clear();
+		blocks.addAll(result);
 		blocks.rem(BlockPos.asLong(x, y, z));
-		return failed ? null : blocks;
+		return blocks;
 	}
 
 	public TrunkDesigner(final BlockPos pos, final IWorld world) {
+		this(pos, (cx, cz, maxY) -> ChunkSnapshot.of(world.getChunk(cx, cz), 0, maxY, world.getLevelProperties().getTime(), Type.MOTION_BLOCKING_NO_LEAVES));
+	}
+
+	TrunkDesigner(final BlockPos pos, final TreeWorld world) {
+		this(pos, (cx, cz, maxY) -> world.snapshot(cx, cz, 0, maxY, Type.MOTION_BLOCKING_NO_LEAVES));
+	}
+
+	private TrunkDesigner(final BlockPos pos, final SnapshotSource snapshots) {
 		x = pos.getX();
 		y = pos.getY();
 		z = pos.getZ();
-		this.world = world;
+		this.snapshots = snapshots;
 		centerHeight = y + MAX_TRUNK_HEIGHT;
 	}
 
 	/** returns true when done */
 	public boolean designTrunk() {
-		if (!doEeet()) {
-			failed = true;
+		if (future == null) {
+			future = start();
 		}
 
-		return failed || (j > TRUNK_RADIUS);
+		return future.isDone();
 	}
 
-	private boolean doEeet() {
-		final int ds = i * i + j * j;
+	private CompletableFuture<LongArrayList> start() {
+		final Long2ObjectOpenHashMap<ChunkSnapshot> chunks = new Long2ObjectOpenHashMap<>();
+		final ObjectArrayList<CompletableFuture<LongArrayList>> columns = new ObjectArrayList<>();
+		final AtomicBoolean failed = new AtomicBoolean();
+
+		for (int j = -TRUNK_RADIUS; j <= TRUNK_RADIUS; j++) {
+			for (int i = -TRUNK_RADIUS; i <= TRUNK_RADIUS; i++) {
+				final int ds = i * i + j * j;
 
-		if (ds < TRUNK_RADIUS_SQUARED) {
-			final int dy = ds == 0 ? 0 : (int) Math.round(Math.sqrt(ds));
-			if(!placeTrunkSection(world, blocks, mPos.set(x + i, 0, z + j), centerHeight - dy)) {
-				return false;
+				if (ds < TRUNK_RADIUS_SQUARED) {
+					final int cx = x + i;
+					final int cz = z + j;
+					final int height = centerHeight - (ds == 0 ? 0 : (int) Math.round(Math.sqrt(ds)));
+					final ChunkSnapshot snapshot = chunks.computeIfAbsent(ChunkPos.toLong(cx >> 4, cz >> 4), k -> this.snapshots.get(cx >> 4, cz >> 4, centerHeight));
+
+					if (snapshot == null) {
+						return CompletableFuture.completedFuture(null);
+					}
+
+					columns.add(CompletableFuture.supplyAsync(() -> designColumn(snapshot, cx, cz, height, failed), TreeWorkers.EXECUTOR));
+				}
 			}
 		}
 
-		if (++i > TRUNK_RADIUS) {
-			i = -TRUNK_RADIUS;
-			j++;
+		return CompletableFuture.allOf(columns.toArray(new CompletableFuture<?>[columns.size()])).handle((v, e) -> {
+			if (e != null) {
+				Adversity.LOG.warn("[Adversity] Unable to design doom tree trunk", e);
+				return null;
+			}
+
+			if (failed.get()) {
+				return null;
+			}
+
+			// merge in column order so results match a sequential check
+			final LongArrayList result = new LongArrayList();
+
+			for (final CompletableFuture<LongArrayList> c : columns) {
+				result.addAll(c.join());
+			}
+
+			return result;
+		});
+	}
+
+	/** Runs off-thread - must only touch the snapshot */
+	private static LongArrayList designColumn(ChunkSnapshot snapshot, int x, int z, int height, AtomicBoolean failed) {
+		final LongArrayList result = new LongArrayList();
+
+		if (!failed.get() && !placeTrunkSection(snapshot, result, new BlockPos.Mutable(x, 0, z), height)) {
+			failed.set(true);
 		}
 
-		return true;
+		return result;
 	}
 }
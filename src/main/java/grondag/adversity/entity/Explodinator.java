@@ -22,16 +22,23 @@
 
 package grondag.adversity.entity;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
 
 import javax.annotation.Nullable;
 
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
@@ -43,7 +50,6 @@ import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.TntEntity;
 import net.minecraft.entity.damage.DamageSource;
 import net.minecraft.entity.player.PlayerEntity;
-import net.minecraft.fluid.FluidState;
 import net.minecraft.item.ItemStack;
 import net.minecraft.loot.context.LootContext;
 import net.minecraft.loot.context.LootContextParameters;
@@ -54,15 +60,47 @@ import net.minecraft.sound.SoundCategory;
 import net.minecraft.sound.SoundEvents;
 import net.minecraft.util.PacketByteBuf;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.BlockPos.PooledMutable;
 import net.minecraft.util.math.Box;
 import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
+import net.minecraft.world.chunk.WorldChunk;
 import net.minecraft.world.explosion.Explosion;
 
+import grondag.adversity.AdversityConfig;
+import grondag.adversity.jfr.AdversityJfr;
+import grondag.adversity.jfr.Span;
+
 public class Explodinator extends Explosion {
 
+	/** Unit direction of each ray cast from the explosion - the surface of a 16x16x16 grid, as vanilla does */
+	private static final float[] RAYS;
+
+	static {
+		final FloatArrayList rays = new FloatArrayList();
+
+		for(int xPos = 0; xPos < 16; ++xPos) {
+			for(int yPos = 0; yPos < 16; ++yPos) {
+				for(int zPos = 0; zPos < 16; ++zPos) {
+					if (xPos == 0 || xPos == 15 || yPos == 0 || yPos == 15 || zPos == 0 || zPos == 15) {
+						final float sx = xPos / 15.0F * 2.0F - 1.0F;
+						final float sy = yPos / 15.0F * 2.0F - 1.0F;
+						final float sz = zPos / 15.0F * 2.0F - 1.0F;
+						final float dist = (float) Math.sqrt(sx * sx + sy * sy + sz * sz);
+						rays.add(sx / dist);
+						rays.add(sy / dist);
+						rays.add(sz / dist);
+					}
+				}
+			}
+		}
+
+		RAYS = rays.toFloatArray();
+	}
+
+	/** Farthest a ray can travel, per unit of power: 1.3 * power / 0.225 steps of 0.3 blocks */
+	private static final float MAX_REACH_FACTOR = 1.75F;
+
 	public Explodinator() {
 		super(null, null, 0, 0, 0, 0, false, null);
 	}
@@ -82,10 +120,17 @@ public class Explodinator extends Explosion {
 
 	protected boolean blockFire;
 	protected boolean playerFire;
-	protected final List<BlockPos> affectedBlocks = new ArrayList<>();
+	/** Packed positions, owned and reused by this explosion */
+	protected final LongArrayList affectedBlocks = new LongArrayList();
+	protected final List<BlockPos> affectedView = new AffectedView();
 	protected final Map<PlayerEntity, Vec3d> affectedPlayers = new HashMap<>();
 	protected final BlockPos.Mutable mPos = new BlockPos.Mutable();
+	protected final BlockPos.Mutable downPos = new BlockPos.Mutable();
 	protected final LongOpenHashSet blockSet = new LongOpenHashSet();
+	protected final ExplosionVolume volume = new ExplosionVolume();
+	protected final ExplosionExposure exposure = new ExplosionExposure();
+	protected final ObjectArrayList<Entity> victims = new ObjectArrayList<>();
+	protected final ExplosionDrops drops = new ExplosionDrops();
 
 	protected Explosion.DestructionType blockDestructionType;
 	protected final Random random = new Random();
@@ -108,18 +153,18 @@ public class Explodinator extends Explosion {
 		buf.writeEnumConstant(blockDestructionType);
 		buf.writeBoolean(blockFire);
 		buf.writeBoolean(playerFire);
-		buf.writeVarInt(affectedBlocks.size());
+		final int limit = affectedBlocks.size();
+		buf.writeVarInt(limit);
 
 		final int ox = MathHelper.floor(x);
 		final int oy = MathHelper.floor(y);
 		final int oz = MathHelper.floor(z);
-		final Iterator<BlockPos> it = affectedBlocks.iterator();
 
-		while(it.hasNext()) {
-			final BlockPos pos = it.next();
-			final int rx = pos.getX() - ox;
-			final int ry = pos.getY() - oy;
-			final int rz = pos.getZ() - oz;
+		for (int i = 0; i < limit; i++) {
+			final long pos = affectedBlocks.getLong(i);
+			final int rx = BlockPos.unpackLongX(pos) - ox;
+			final int ry = BlockPos.unpackLongY(pos) - oy;
+			final int rz = BlockPos.unpackLongZ(pos) - oz;
 			buf.writeByte(rx);
 			buf.writeByte(ry);
 			buf.writeByte(rz);
@@ -146,7 +191,7 @@ public class Explodinator extends Explosion {
 			final int rx = buf.readByte();
 			final int ry = buf.readByte();
 			final int rz = buf.readByte();
-			affectedBlocks.add(BlockPos.PooledMutable.get().set(ox + rx, oy + ry, oz + rz));
+			affectedBlocks.add(BlockPos.asLong(ox + rx, oy + ry, oz + rz));
 		}
 
 		return this;
@@ -192,57 +237,154 @@ public class Explodinator extends Explosion {
 		return this;
 	}
 
+	/** Most pieces a parallel ray cast is split into */
+	private static final int RAY_SEGMENTS = 16;
+
+	private static class RaySegment {
+		final LongArrayList hits = new LongArrayList();
+		int steps = 0;
+	}
+
+	/**
+	 * Casts rays across the common fork-join pool against a snapshot of the blast cube.
+	 * Hits merge in ray order, so the affected set matches the serial path.
+	 * Only for explosions whose entity (if any) uses default resistance and destroy hooks.
+	 * Returns the number of ray steps.
+	 */
+	private int castParallel(LongOpenHashSet blocks) {
+		final int rayCount = RAYS.length / 3;
+		final float[] intensities = new float[rayCount];
+
+		// same random draws in the same order as the serial path
+		for (int i = 0; i < rayCount; i++) {
+			intensities[i] = power * (0.7F + world.random.nextFloat() * 0.6F);
+		}
+
+		final ExplosionVolume volume = this.volume;
+		volume.readAll();
+
+		final double x = this.x;
+		final double y = this.y;
+		final double z = this.z;
+		final int segments = Math.max(1, Math.min(RAY_SEGMENTS, ForkJoinPool.getCommonPoolParallelism()));
+		final ArrayList<CompletableFuture<RaySegment>> futures = new ArrayList<>(segments);
+
+		for (int s = 0; s < segments; s++) {
+			final int first = rayCount * s / segments;
+			final int last = rayCount * (s + 1) / segments;
+			futures.add(CompletableFuture.supplyAsync(() -> castRays(volume, x, y, z, intensities, first, last), ForkJoinPool.commonPool()));
+		}
+
+		int touched = 0;
+
+		for (final CompletableFuture<RaySegment> future : futures) {
+			final RaySegment segment = future.join();
+			final LongArrayList hits = segment.hits;
+			final int limit = hits.size();
+			touched += segment.steps;
+
+			for (int i = 0; i < limit; i++) {
+				blocks.add(hits.getLong(i));
+			}
+		}
+
+		return touched;
+	}
+
+	/** Runs on pool threads - must only touch the volume snapshot */
+	private static RaySegment castRays(ExplosionVolume volume, double x, double y, double z, float[] intensities, int first, int last) {
+		final RaySegment result = new RaySegment();
+		final float[] rays = RAYS;
+
+		for (int ray = first; ray < last; ray++) {
+			final int r = ray * 3;
+			final float sx = rays[r];
+			final float sy = rays[r + 1];
+			final float sz = rays[r + 2];
+			float px = (float) x;
+			float py = (float) y;
+			float pz = (float) z;
+
+			for(float p = intensities[ray]; p > 0.0F; p -= 0.22500001F) {
+				final int bx = MathHelper.floor(px);
+				final int by = MathHelper.floor(py);
+				final int bz = MathHelper.floor(pz);
+				final float res = ExplosionVolume.resistance(volume.snapshotStateId(bx, by, bz));
+				++result.steps;
+
+				if (res >= 0) {
+					p -= (res + 0.3F) * 0.3F;
+				}
+
+				if (p > 0.0F) {
+					result.hits.add(BlockPos.asLong(bx, by, bz));
+				}
+
+				px += sx * 0.30000001192092896F;
+				py += sy * 0.30000001192092896F;
+				pz += sz * 0.30000001192092896F;
+			}
+		}
+
+		return result;
+	}
+
 	@Override
 	public void collectBlocksAndDamageEntities() {
+		final Span span = AdversityJfr.explosionCollect();
 		final BlockPos.Mutable mPos = this.mPos;
 		final LongOpenHashSet blocks = blockSet;
+		final ExplosionVolume volume = this.volume;
+		final float[] rays = RAYS;
+		int touched = 0;
 		blocks.clear();
+		volume.prepare(world, x, y, z, power * MAX_REACH_FACTOR);
 
-		for(int xPos = 0; xPos < 16; ++xPos) {
-			for(int yPos = 0; yPos < 16; ++yPos) {
-				for(int zPos = 0; zPos < 16; ++zPos) {
-					if (xPos == 0 || xPos == 15 || yPos == 0 || yPos == 15 || zPos == 0 || zPos == 15) {
-						float sx = xPos / 15.0F * 2.0F - 1.0F;
-						float sy = yPos / 15.0F * 2.0F - 1.0F;
-						float sz = zPos / 15.0F * 2.0F - 1.0F;
-						final float dist = (float) Math.sqrt(sx * sx + sy * sy + sz * sz);
-						sx /= dist;
-						sy /= dist;
-						sz /= dist;
-						float px = (float) x;
-						float py = (float) y;
-						float pz = (float) z;
-
-						for(float p = power * (0.7F + world.random.nextFloat() * 0.6F); p > 0.0F; p -= 0.22500001F) {
-							mPos.set(px, py, pz);
-							final BlockState blockState = world.getBlockState(mPos);
-							final FluidState fluidState = world.getFluidState(mPos);
-
-							if (!blockState.isAir() || !fluidState.isEmpty()) {
-								float res = Math.max(blockState.getBlock().getBlastResistance(), fluidState.getBlastResistance());
-
-								if (entity != null) {
-									res = entity.getEffectiveExplosionResistance(this, world, mPos, blockState, fluidState, res);
-								}
-
-								p -= (res + 0.3F) * 0.3F;
-							}
+		if (power >= AdversityConfig.PARALLEL_EXPLOSION_POWER && volume.isComplete() && (entity == null || entity.getClass() == WalkerEntity.class)) {
+			touched = castParallel(blocks);
+		} else {
+			for (int r = 0; r < rays.length; r += 3) {
+				final float sx = rays[r];
+				final float sy = rays[r + 1];
+				final float sz = rays[r + 2];
+				float px = (float) x;
+				float py = (float) y;
+				float pz = (float) z;
+
+				for(float p = power * (0.7F + world.random.nextFloat() * 0.6F); p > 0.0F; p -= 0.22500001F) {
+					final int bx = MathHelper.floor(px);
+					final int by = MathHelper.floor(py);
+					final int bz = MathHelper.floor(pz);
+					final int stateId = volume.stateId(bx, by, bz);
+					++touched;
+
+					float res = ExplosionVolume.resistance(stateId);
+
+					if (res >= 0) {
+						if (entity != null) {
+							final BlockState blockState = Block.STATE_IDS.get(stateId);
+							res = entity.getEffectiveExplosionResistance(this, world, mPos.set(bx, by, bz), blockState, blockState.getFluidState(), res);
+						}
 
-							if (p > 0.0F && (entity == null || entity.canExplosionDestroyBlock(this, world, mPos, blockState, p))) {
-								blocks.add(mPos.asLong());
-							}
+						p -= (res + 0.3F) * 0.3F;
+					}
 
-							px += sx * 0.30000001192092896F;
-							py += sy * 0.30000001192092896F;
-							pz += sz * 0.30000001192092896F;
-						}
+					if (p > 0.0F && (entity == null || entity.canExplosionDestroyBlock(this, world, mPos.set(bx, by, bz), Block.STATE_IDS.get(stateId), p))) {
+						blocks.add(BlockPos.asLong(bx, by, bz));
 					}
+
+					px += sx * 0.30000001192092896F;
+					py += sy * 0.30000001192092896F;
+					pz += sz * 0.30000001192092896F;
 				}
 			}
+
 		}
 
-		for(final long l : blocks) {
-			affectedBlocks.add(BlockPos.PooledMutable.get().set(l));
+		final LongIterator it = blocks.iterator();
+
+		while (it.hasNext()) {
+			affectedBlocks.add(it.nextLong());
 		}
 
 		final float radius = power * 2.0F;
@@ -252,14 +394,16 @@ public class Explodinator extends Explosion {
 		final int yMax = MathHelper.floor(y + radius + 1);
 		final int zMin = MathHelper.floor(z - radius - 1);
 		final int zMax = MathHelper.floor(z + radius + 1);
-		final List<Entity> victims = world.getEntities(entity, new Box(xMin, yMin, zMin, xMax, yMax, zMax));
-		final Vec3d center = new Vec3d(x, y, z);
+		final ObjectArrayList<Entity> victims = this.victims;
+		victims.clear();
+		collectVictims(xMin, yMin, zMin, xMax, yMax, zMax, victims);
+		exposure.prepare(world, volume, x, y, z);
 
 		for(int i = 0; i < victims.size(); ++i) {
 			final Entity victim = victims.get(i);
 
 			if (!victim.isImmuneToExplosion()) {
-				final double distSq = MathHelper.sqrt(victim.squaredDistanceTo(new Vec3d(x, y, z))) / radius;
+				final double distSq = MathHelper.sqrt(victim.squaredDistanceTo(x, y, z)) / radius;
 
 				if (distSq <= 1.0D) {
 					double dx = victim.getX() - x;
@@ -271,7 +415,7 @@ public class Explodinator extends Explosion {
 						dx /= dist;
 						dy /= dist;
 						dz /= dist;
-						final float exposure = getExposure(center, victim);
+						final float exposure = exposure.exposure(victim);
 
 						if (exposure > 0.05f) {
 							final float dmg = (float) ((1 - distSq) * exposure);
@@ -303,10 +447,71 @@ public class Explodinator extends Explosion {
 				}
 			}
 		}
+		exposure.release();
+		volume.release();
+		final int victimCount = victims.size();
+		victims.clear();
+		span.finish(touched + victimCount, 0, 0);
+	}
+
+	private static final Predicate<Entity> NOT_LIVING = e -> !(e instanceof LivingEntity);
+
+	/**
+	 * Damage is applied after every victim is found because a death removes the
+	 * entity from the chunk's section list while it is being read. Server chunks
+	 * only index living entities, so items, vehicles, TNT and the like still come
+	 * from a world query.
+	 */
+	private void collectVictims(int xMin, int yMin, int zMin, int xMax, int yMax, int zMax, List<Entity> victims) {
+		final Box box = new Box(xMin, yMin, zMin, xMax, yMax, zMax);
+
+		if (world.isClient) {
+			victims.addAll(world.getEntities(entity, box));
+			return;
+		}
+
+		victims.addAll(world.getEntities(entity, box, NOT_LIVING));
+
+		// entities are bucketed by feet position - look a little either side like chunk entity queries do
+		final int minSection = (yMin - 2) >> 4;
+		final int maxSection = (yMax + 2) >> 4;
+
+		for (int cx = (xMin - 2) >> 4; cx <= (xMax + 2) >> 4; cx++) {
+			for (int cz = (zMin - 2) >> 4; cz <= (zMax + 2) >> 4; cz++) {
+				final WorldChunk chunk = world.getChunkManager().getWorldChunk(cx, cz, false);
+
+				if (chunk == null) {
+					continue;
+				}
+
+				final DoomableChunkAccess access = (DoomableChunkAccess) chunk;
+
+				for (int section = minSection; section <= maxSection; section++) {
+					final List<LivingEntity> candidates = access.getDoomCandidates(section);
+
+					if (candidates == null) {
+						continue;
+					}
+
+					final int limit = candidates.size();
+
+					for (int i = 0; i < limit; i++) {
+						final LivingEntity e = candidates.get(i);
+
+						if (e != entity && !e.isSpectator() && e.getBoundingBox().intersects(box)) {
+							victims.add(e);
+						}
+					}
+				}
+			}
+		}
 	}
 
+
 	@Override
 	public void affectWorld(boolean doParticles) {
+		final Span span = AdversityJfr.explosionAffect();
+		int changed = 0;
 		world.playSound((PlayerEntity)null, x, y, z, SoundEvents.ENTITY_GENERIC_EXPLODE, SoundCategory.BLOCKS, 4.0F, (1.0F + (world.random.nextFloat() - world.random.nextFloat()) * 0.2F) * 0.7F);
 		final boolean grief = blockDestructionType != Explosion.DestructionType.NONE;
 
@@ -314,11 +519,24 @@ public class Explodinator extends Explosion {
 			fx.apply(world, x, y, z, power, random);
 		}
 
+		// mutable position for the loops below - callees only read it during the call
+		final BlockPos.Mutable pos = mPos;
+		final int limit = affectedBlocks.size();
+
 		if (grief) {
-			final Iterator<BlockPos> it = affectedBlocks.iterator();
+			// one builder for every block - position and block entity are replaced each time
+			LootContext.Builder lootContext = null;
 
-			while(it.hasNext()) {
-				final BlockPos pos = it.next();
+			if (world instanceof ServerWorld) {
+				lootContext = new LootContext.Builder((ServerWorld) world).setRandom(world.random).put(LootContextParameters.TOOL, ItemStack.EMPTY);
+
+				if (blockDestructionType == Explosion.DestructionType.DESTROY) {
+					lootContext.put(LootContextParameters.EXPLOSION_RADIUS, power);
+				}
+			}
+
+			for (int i = 0; i < limit; i++) {
+				pos.set(affectedBlocks.getLong(i));
 				final BlockState blockState = world.getBlockState(pos);
 				final Block block = blockState.getBlock();
 
@@ -349,36 +567,39 @@ public class Explodinator extends Explosion {
 				}
 
 				if (!blockState.isAir()) {
-					if (block.shouldDropItemsOnExplosion(this) && world instanceof ServerWorld) {
+					if (block.shouldDropItemsOnExplosion(this) && lootContext != null) {
 						final BlockEntity blockEntity_1 = block.hasBlockEntity() ? world.getBlockEntity(pos) : null;
-						final LootContext.Builder lootContext = (new LootContext.Builder((ServerWorld)world)).setRandom(world.random).put(LootContextParameters.POSITION, pos).put(LootContextParameters.TOOL, ItemStack.EMPTY).putNullable(LootContextParameters.BLOCK_ENTITY, blockEntity_1);
+						lootContext.put(LootContextParameters.POSITION, pos).putNullable(LootContextParameters.BLOCK_ENTITY, blockEntity_1);
 
-						if (blockDestructionType == Explosion.DestructionType.DESTROY) {
-							lootContext.put(LootContextParameters.EXPLOSION_RADIUS, power);
+						for (final ItemStack stack : blockState.getBlock().getDroppedStacks(blockState, lootContext)) {
+							drops.add(stack, pos.getX(), pos.getY(), pos.getZ());
 						}
-
-						blockState.getBlock().getDroppedStacks(blockState, lootContext).forEach((itemStack) -> {
-							Block.dropStack(world, pos, itemStack);
-						});
 					}
 				}
 
 				world.setBlockState(pos, Blocks.AIR.getDefaultState(), 3);
 				block.onDestroyedByExplosion(world, pos, this);
+				++changed;
 			}
+
+			drops.spawn(world);
 		}
 
 		if (blockFire) {
-			final Iterator<BlockPos> it = affectedBlocks.iterator();
+			final BlockPos.Mutable below = downPos;
 
-			while(it.hasNext()) {
-				final BlockPos pos = it.next();
+			for (int i = 0; i < limit; i++) {
+				pos.set(affectedBlocks.getLong(i));
+				below.set(pos.getX(), pos.getY() - 1, pos.getZ());
 
-				if (world.getBlockState(pos).isAir() && world.getBlockState(pos.down()).isFullOpaque(world, pos.down()) && random.nextInt(3) == 0) {
+				if (world.getBlockState(pos).isAir() && world.getBlockState(below).isFullOpaque(world, below) && random.nextInt(3) == 0) {
 					world.setBlockState(pos, Blocks.FIRE.getDefaultState());
+					++changed;
 				}
 			}
 		}
+
+		span.finish(limit, changed, 0);
 	}
 
 	@Override
@@ -400,16 +621,50 @@ public class Explodinator extends Explosion {
 
 	@Override
 	public void clearAffectedBlocks() {
-		for(final BlockPos p : affectedBlocks) {
-			((PooledMutable) p).close();
-		}
-
 		affectedBlocks.clear();
 	}
 
+	/** Prefer this to {@link #getAffectedBlocks()}, which creates a position for each access */
+	public int affectedBlockCount() {
+		return affectedBlocks.size();
+	}
+
+	/** Live view of the affected positions for code expecting a vanilla explosion */
 	@Override
 	public List<BlockPos> getAffectedBlocks() {
-		return affectedBlocks;
+		return affectedView;
+	}
+
+	private class AffectedView extends AbstractList<BlockPos> {
+		@Override
+		public BlockPos get(int index) {
+			return BlockPos.fromLong(affectedBlocks.getLong(index));
+		}
+
+		@Override
+		public int size() {
+			return affectedBlocks.size();
+		}
+
+		@Override
+		public BlockPos set(int index, BlockPos pos) {
+			return BlockPos.fromLong(affectedBlocks.set(index, pos.asLong()));
+		}
+
+		@Override
+		public void add(int index, BlockPos pos) {
+			affectedBlocks.add(index, pos.asLong());
+		}
+
+		@Override
+		public BlockPos remove(int index) {
+			return BlockPos.fromLong(affectedBlocks.removeLong(index));
+		}
+
+		@Override
+		public void clear() {
+			affectedBlocks.clear();
+		}
 	}
 
 	public Explodinator setWorld(World world) {
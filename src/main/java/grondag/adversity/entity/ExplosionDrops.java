@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package grondag.adversity.entity;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import net.minecraft.entity.ItemEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.world.GameRules;
+import net.minecraft.world.World;
+
+/**
+ * Collects block drops for a whole explosion so identical stacks land as one
+ * item entity, placed at the count-weighted center of the blocks that dropped it.
+ */
+class ExplosionDrops {
+	private static class Pile {
+		ItemStack stack;
+		double x, y, z;
+
+		void add(int count, int bx, int by, int bz) {
+			x += (bx + 0.5D) * count;
+			y += (by + 0.5D) * count;
+			z += (bz + 0.5D) * count;
+		}
+	}
+
+	private final ObjectArrayList<Pile> piles = new ObjectArrayList<>();
+	/** Retained to avoid allocation in later explosions */
+	private final ObjectArrayList<Pile> spare = new ObjectArrayList<>();
+
+	void add(ItemStack stack, int bx, int by, int bz) {
+		if (stack.isEmpty()) {
+			return;
+		}
+
+		final int limit = piles.size();
+
+		for (int i = 0; i < limit; i++) {
+			final Pile pile = piles.get(i);
+			final ItemStack target = pile.stack;
+			final int room = target.getMaxCount() - target.getCount();
+
+			if (room > 0 && canMerge(target, stack)) {
+				final int moved = Math.min(room, stack.getCount());
+				target.increment(moved);
+				pile.add(moved, bx, by, bz);
+				stack.decrement(moved);
+
+				if (stack.isEmpty()) {
+					return;
+				}
+			}
+		}
+
+		final Pile pile = spare.isEmpty() ? new Pile() : spare.pop();
+		pile.stack = stack;
+		pile.x = 0;
+		pile.y = 0;
+		pile.z = 0;
+		pile.add(stack.getCount(), bx, by, bz);
+		piles.add(pile);
+	}
+
+	private static boolean canMerge(ItemStack a, ItemStack b) {
+		return a.getItem() == b.getItem() && ItemStack.areItemsEqual(a, b) && ItemStack.areTagsEqual(a, b);
+	}
+
+	/** Spawns one item entity per pile, as {@link net.minecraft.block.Block#dropStack} would */
+	void spawn(World world) {
+		final boolean drop = !world.isClient && world.getGameRules().getBoolean(GameRules.DO_TILE_DROPS);
+		final int limit = piles.size();
+
+		for (int i = 0; i < limit; i++) {
+			final Pile pile = piles.get(i);
+
+			if (drop) {
+				final ItemStack stack = pile.stack;
+				final double count = stack.getCount();
+				final double x = pile.x / count + (world.random.nextFloat() - 0.5F) * 0.5F;
+				final double y = pile.y / count + (world.random.nextFloat() - 0.5F) * 0.5F;
+				final double z = pile.z / count + (world.random.nextFloat() - 0.5F) * 0.5F;
+				final ItemEntity item = new ItemEntity(world, x, y, z, stack);
+				item.setToDefaultPickupDelay();
+				world.spawnEntity(item);
+			}
+
+			pile.stack = null;
+			spare.add(pile);
+		}
+
+		piles.clear();
+	}
+}
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package grondag.adversity.entity;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.shape.VoxelShape;
+import net.minecraft.world.EmptyBlockView;
+import net.minecraft.world.World;
+
+/**
+ * Same sampling as {@link net.minecraft.world.explosion.Explosion#getExposure(Vec3d, Entity)}
+ * but rays walk the explosion's cached state ids instead of ray tracing the world.
+ * Only voxels with partial or position-dependent shapes need a real shape ray trace.
+ */
+class ExplosionExposure {
+	private static final byte CLEAR = 0;
+	private static final byte SOLID = 1;
+	/** Outline shape is partial or depends on position - needs a real ray trace */
+	private static final byte PARTIAL = 2;
+
+	/** Outline shape kind by raw state id */
+	private static class Shapes {
+		static final byte[] TABLE;
+
+		static {
+			int size = 0;
+
+			for (final BlockState state : Block.STATE_IDS) {
+				size = Math.max(size, Block.getRawIdFromState(state) + 1);
+			}
+
+			TABLE = new byte[size];
+
+			for (final BlockState state : Block.STATE_IDS) {
+				TABLE[Block.getRawIdFromState(state)] = kind(state);
+			}
+		}
+
+		static byte kind(BlockState state) {
+			final Block block = state.getBlock();
+
+			if (block.hasDynamicBounds() || block.getOffsetType() != Block.OffsetType.NONE) {
+				return PARTIAL;
+			}
+
+			final VoxelShape shape = state.getOutlineShape(EmptyBlockView.INSTANCE, BlockPos.ORIGIN);
+
+			if (shape.isEmpty()) {
+				return CLEAR;
+			}
+
+			return Block.isShapeFullCube(shape) ? SOLID : PARTIAL;
+		}
+	}
+
+	private static byte shapeKind(int stateId) {
+		final byte[] table = Shapes.TABLE;
+		return stateId >= 0 && stateId < table.length ? table[stateId] : Shapes.kind(Block.STATE_IDS.get(stateId));
+	}
+
+	private final BlockPos.Mutable mPos = new BlockPos.Mutable();
+
+	private ExplosionVolume volume;
+	private World world;
+	private double x, y, z;
+	private int endX, endY, endZ;
+	private Vec3d center;
+
+	void prepare(World world, ExplosionVolume volume, double x, double y, double z) {
+		this.world = world;
+		this.volume = volume;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		endX = MathHelper.floor(x);
+		endY = MathHelper.floor(y);
+		endZ = MathHelper.floor(z);
+		center = null;
+	}
+
+	void release() {
+		world = null;
+		volume = null;
+		center = null;
+	}
+
+	/** Fraction of the entity's sample points with a clear line to the explosion */
+	float exposure(Entity entity) {
+		final Box box = entity.getBoundingBox();
+		final double dx = 1.0D / ((box.x2 - box.x1) * 2.0D + 1.0D);
+		final double dy = 1.0D / ((box.y2 - box.y1) * 2.0D + 1.0D);
+		final double dz = 1.0D / ((box.z2 - box.z1) * 2.0D + 1.0D);
+
+		if (dx < 0.0D || dy < 0.0D || dz < 0.0D) {
+			return 0.0F;
+		}
+
+		final double offsetX = (1.0D - Math.floor(1.0D / dx) * dx) / 2.0D;
+		final double offsetZ = (1.0D - Math.floor(1.0D / dz) * dz) / 2.0D;
+		int open = 0;
+		int total = 0;
+
+		for (float fx = 0.0F; fx <= 1.0F; fx = (float) (fx + dx)) {
+			for (float fy = 0.0F; fy <= 1.0F; fy = (float) (fy + dy)) {
+				for (float fz = 0.0F; fz <= 1.0F; fz = (float) (fz + dz)) {
+					final double sx = MathHelper.lerp(fx, box.x1, box.x2) + offsetX;
+					final double sy = MathHelper.lerp(fy, box.y1, box.y2);
+					final double sz = MathHelper.lerp(fz, box.z1, box.z2) + offsetZ;
+
+					if (isOpen(sx, sy, sz)) {
+						++open;
+					}
+
+					++total;
+				}
+			}
+		}
+
+		return (float) open / (float) total;
+	}
+
+	/** Walks every voxel on the segment from the sample to the explosion, like the world ray trace does */
+	private boolean isOpen(double sx, double sy, double sz) {
+		int vx = MathHelper.floor(sx);
+		int vy = MathHelper.floor(sy);
+		int vz = MathHelper.floor(sz);
+
+		final double dx = x - sx;
+		final double dy = y - sy;
+		final double dz = z - sz;
+		final int stepX = dx > 0 ? 1 : dx < 0 ? -1 : 0;
+		final int stepY = dy > 0 ? 1 : dy < 0 ? -1 : 0;
+		final int stepZ = dz > 0 ? 1 : dz < 0 ? -1 : 0;
+		final double deltaX = stepX == 0 ? Double.MAX_VALUE : 1.0D / Math.abs(dx);
+		final double deltaY = stepY == 0 ? Double.MAX_VALUE : 1.0D / Math.abs(dy);
+		final double deltaZ = stepZ == 0 ? Double.MAX_VALUE : 1.0D / Math.abs(dz);
+		double nextX = stepX == 0 ? Double.MAX_VALUE : (stepX > 0 ? vx + 1 - sx : sx - vx) * deltaX;
+		double nextY = stepY == 0 ? Double.MAX_VALUE : (stepY > 0 ? vy + 1 - sy : sy - vy) * deltaY;
+		double nextZ = stepZ == 0 ? Double.MAX_VALUE : (stepZ > 0 ? vz + 1 - sz : sz - vz) * deltaZ;
+
+		while (true) {
+			if (blocks(vx, vy, vz, sx, sy, sz)) {
+				return false;
+			}
+
+			if (vx == endX && vy == endY && vz == endZ) {
+				return true;
+			}
+
+			if (nextX < nextY && nextX < nextZ) {
+				if (nextX > 1.0D) return true;
+				vx += stepX;
+				nextX += deltaX;
+			} else if (nextY < nextZ) {
+				if (nextY > 1.0D) return true;
+				vy += stepY;
+				nextY += deltaY;
+			} else {
+				if (nextZ > 1.0D) return true;
+				vz += stepZ;
+				nextZ += deltaZ;
+			}
+		}
+	}
+
+	private boolean blocks(int vx, int vy, int vz, double sx, double sy, double sz) {
+		final int stateId = volume.stateId(vx, vy, vz);
+		final byte kind = shapeKind(stateId);
+
+		if (kind != PARTIAL) {
+			return kind == SOLID;
+		}
+
+		// rare enough that allocating here is fine
+		if (center == null) {
+			center = new Vec3d(x, y, z);
+		}
+
+		final BlockPos pos = mPos.set(vx, vy, vz);
+		return Block.STATE_IDS.get(stateId).getOutlineShape(world, pos).rayTrace(new Vec3d(sx, sy, sz), center, pos) != null;
+	}
+}
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.entity;
+
+import java.util.Arrays;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.ChunkStatus;
+
+/**
+ * Block state ids for the cube an explosion can reach. Each chunk section
+ * is read all at once the first time a ray enters it. Positions outside
+ * the cube are read from the world.
+ */
+class ExplosionVolume {
+	private static final int UNREAD = -1;
+	private static final int AIR_ID = Block.getRawIdFromState(Blocks.AIR.getDefaultState());
+	/** Stands in for chunks that aren't fully loaded - stops rays so they can't reach or load them */
+	private static final int UNLOADED_ID = Block.getRawIdFromState(Blocks.BARRIER.getDefaultState());
+
+	private int[] ids = new int[0];
+	/** Larger blasts read beyond the cube from the world - 97 cubed ids is under 4MB */
+	private static final int MAX_RADIUS = 48;
+
+	private int minX, minY, minZ, size;
+	private boolean complete;
+	private World world;
+	private final BlockPos.Mutable mPos = new BlockPos.Mutable();
+
+	/** Blast resistance by raw state id, with -1 for air without fluid */
+	private static class Resistance {
+		static final float[] TABLE;
+
+		static {
+			int size = 0;
+
+			for (final BlockState state : Block.STATE_IDS) {
+				size = Math.max(size, Block.getRawIdFromState(state) + 1);
+			}
+
+			TABLE = new float[size];
+
+			for (final BlockState state : Block.STATE_IDS) {
+				final int id = Block.getRawIdFromState(state);
+
+				if (state.isAir() && state.getFluidState().isEmpty()) {
+					TABLE[id] = -1;
+				} else {
+					TABLE[id] = Math.max(state.getBlock().getBlastResistance(), state.getFluidState().getBlastResistance());
+				}
+			}
+		}
+	}
+
+	/** Blast resistance of the state, or -1 if it doesn't slow explosions at all */
+	static float resistance(int stateId) {
+		final float[] table = Resistance.TABLE;
+
+		if (stateId >= 0 && stateId < table.length) {
+			return table[stateId];
+		}
+
+		final BlockState state = Block.STATE_IDS.get(stateId);
+		return state.isAir() && state.getFluidState().isEmpty() ? -1 : Math.max(state.getBlock().getBlastResistance(), state.getFluidState().getBlastResistance());
+	}
+
+	/** Covers every position within reach of the given point */
+	void prepare(World world, double x, double y, double z, float reach) {
+		this.world = world;
+		final int r = Math.min(MAX_RADIUS, MathHelper.ceil(reach) + 1);
+		complete = r == MathHelper.ceil(reach) + 1;
+		minX = MathHelper.floor(x) - r;
+		minY = MathHelper.floor(y) - r;
+		minZ = MathHelper.floor(z) - r;
+		size = r * 2 + 1;
+
+		final int volume = size * size * size;
+
+		if (ids.length < volume) {
+			ids = new int[volume];
+		}
+
+		Arrays.fill(ids, 0, volume, UNREAD);
+	}
+
+	/** True if the cube holds every position within reach */
+	boolean isComplete() {
+		return complete;
+	}
+
+	void release() {
+		world = null;
+	}
+
+	int stateId(int x, int y, int z) {
+		final int dx = x - minX;
+		final int dy = y - minY;
+		final int dz = z - minZ;
+
+		if (dx < 0 || dy < 0 || dz < 0 || dx >= size || dy >= size || dz >= size) {
+			return world.getChunk(x >> 4, z >> 4, ChunkStatus.FULL, false) == null ? UNLOADED_ID : Block.getRawIdFromState(world.getBlockState(mPos.set(x, y, z)));
+		}
+
+		final int index = (dy * size + dz) * size + dx;
+		int result = ids[index];
+
+		if (result == UNREAD) {
+			readSection(x >> 4, y >> 4, z >> 4);
+			result = ids[index];
+		}
+
+		return result;
+	}
+
+	/** Reads every section up front so {@link #snapshotStateId(int, int, int)} can run off-thread */
+	void readAll() {
+		final int max = size - 1;
+
+		for (int sy = minY >> 4; sy <= (minY + max) >> 4; sy++) {
+			for (int sz = minZ >> 4; sz <= (minZ + max) >> 4; sz++) {
+				for (int sx = minX >> 4; sx <= (minX + max) >> 4; sx++) {
+					readSection(sx, sy, sz);
+				}
+			}
+		}
+	}
+
+	/** After {@link #readAll()} - positions outside the cube read as air. Safe from any thread. */
+	int snapshotStateId(int x, int y, int z) {
+		final int dx = x - minX;
+		final int dy = y - minY;
+		final int dz = z - minZ;
+
+		if (dx < 0 || dy < 0 || dz < 0 || dx >= size || dy >= size || dz >= size) {
+			return AIR_ID;
+		}
+
+		return ids[(dy * size + dz) * size + dx];
+	}
+
+	/** Fills the part of the cube inside the given chunk section */
+	private void readSection(int sectionX, int sectionY, int sectionZ) {
+		final int x0 = Math.max(minX, sectionX << 4);
+		final int y0 = Math.max(minY, sectionY << 4);
+		final int z0 = Math.max(minZ, sectionZ << 4);
+		final int x1 = Math.min(minX + size - 1, (sectionX << 4) + 15);
+		final int y1 = Math.min(minY + size - 1, (sectionY << 4) + 15);
+		final int z1 = Math.min(minZ + size - 1, (sectionZ << 4) + 15);
+
+		ChunkSection section = null;
+		int fill = AIR_ID;
+
+		if (sectionY >= 0 && sectionY < 16) {
+			final Chunk chunk = world.getChunk(sectionX, sectionZ, ChunkStatus.FULL, false);
+
+			if (chunk == null) {
+				fill = UNLOADED_ID;
+			} else {
+				section = chunk.getSectionArray()[sectionY];
+			}
+		}
+
+		final boolean empty = ChunkSection.isEmpty(section);
+
+		for (int y = y0; y <= y1; y++) {
+			for (int z = z0; z <= z1; z++) {
+				int index = ((y - minY) * size + (z - minZ)) * size + (x0 - minX);
+
+				for (int x = x0; x <= x1; x++) {
+					ids[index++] = empty ? fill : Block.getRawIdFromState(section.getBlockState(x & 15, y & 15, z & 15));
+				}
+			}
+		}
+	}
+}
@@ -24,7 +24,6 @@ package grondag.adversity.entity;
 import java.util.List;
 
 import io.netty.util.internal.ThreadLocalRandom;
-import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 
 //import net.minecraft.client.MinecraftClient;
 import net.minecraft.entity.Entity;
@@ -66,8 +65,6 @@ import grondag.adversity.registry.AdversitySounds;
 public class WalkerEntity extends HostileEntity {
 	public static final int TARGET_RANGE = 32;
 
-	public static final ObjectOpenHashSet<WalkerEntity> LOADED = new ObjectOpenHashSet<>();
-
 	private static final TrackedData<Boolean> CHARGING = DataTracker.registerData(WalkerEntity.class, TrackedDataHandlerRegistry.BOOLEAN);
 
 	private boolean targetingUnderwater;
@@ -82,18 +79,6 @@ public class WalkerEntity extends HostileEntity {
 		waterNavigation = new SwimNavigation(this, world);
 		landNavigation = new MobNavigation(this, world);
 
-		if(world != null && !world.isClient) {
-			LOADED.add(this);
-		}
-	}
-
-	@Override
-	public void remove() {
-		if(world != null && !world.isClient) {
-			LOADED.remove(this);
-		}
-
-		super.remove();
 	}
 
 	@Override
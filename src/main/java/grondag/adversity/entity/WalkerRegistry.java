@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package grondag.adversity.entity;
+
+import java.util.List;
+
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.WorldChunk;
+
+/**
+ * Finds loaded walkers near a point by visiting only the chunks in range.
+ * Each world's chunks hold their own walkers - see {@link WalkerChunkAccess}.
+ */
+public enum WalkerRegistry {
+	;
+
+	/** Server only - live walkers within the given distance of the point */
+	public static int countWithin(World world, double x, double y, double z, double radius) {
+		final double radiusSq = radius * radius;
+		final int minX = (int) Math.floor(x - radius) >> 4;
+		final int maxX = (int) Math.floor(x + radius) >> 4;
+		final int minZ = (int) Math.floor(z - radius) >> 4;
+		final int maxZ = (int) Math.floor(z + radius) >> 4;
+		int count = 0;
+
+		for (int cx = minX; cx <= maxX; cx++) {
+			for (int cz = minZ; cz <= maxZ; cz++) {
+				final WorldChunk chunk = world.getChunkManager().getWorldChunk(cx, cz, false);
+
+				if (chunk == null) {
+					continue;
+				}
+
+				final List<WalkerEntity> walkers = ((WalkerChunkAccess) chunk).getWalkers();
+
+				if (walkers == null) {
+					continue;
+				}
+
+				final int limit = walkers.size();
+
+				for (int i = 0; i < limit; i++) {
+					final WalkerEntity w = walkers.get(i);
+
+					if (!w.removed && w.squaredDistanceTo(x, y, z) < radiusSq) {
+						count++;
+					}
+				}
+			}
+		}
+
+		return count;
+	}
+}
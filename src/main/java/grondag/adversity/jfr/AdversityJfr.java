@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.jfr;
+
+import net.minecraft.util.Identifier;
+
+import grondag.adversity.Adversity;
+
+/**
+ * Java Flight Recorder events for tree growth, explosions and packets.
+ *
+ * Each event type can be switched on or off in the recording settings,
+ * by name or by category. A disabled event costs a flag check and a field read.
+ * On JVMs without JFR, or with {@code -Dadversity.jfr=false}, the event
+ * classes are never loaded and every call returns {@link Span#NONE}.
+ */
+public enum AdversityJfr {
+	;
+
+	public static final boolean AVAILABLE = detect();
+
+	private static boolean detect() {
+		if (!Boolean.parseBoolean(System.getProperty("adversity.jfr", "true"))) {
+			return false;
+		}
+
+		try {
+			Class.forName("jdk.jfr.Event");
+			return JfrEvents.isAvailable();
+		} catch (final ClassNotFoundException | LinkageError e) {
+			Adversity.LOG.info("[Adversity] Java Flight Recorder not available - Adversity events disabled");
+			return false;
+		}
+	}
+
+	public static Span troll() {
+		return AVAILABLE ? JfrEvents.troll() : Span.NONE;
+	}
+
+	public static Span trunkBuild() {
+		return AVAILABLE ? JfrEvents.trunkBuild() : Span.NONE;
+	}
+
+	public static Span branchBuild() {
+		return AVAILABLE ? JfrEvents.branchBuild() : Span.NONE;
+	}
+
+	public static Span leafGrowth() {
+		return AVAILABLE ? JfrEvents.leafGrowth() : Span.NONE;
+	}
+
+	public static Span explosionCollect() {
+		return AVAILABLE ? JfrEvents.explosionCollect() : Span.NONE;
+	}
+
+	public static Span explosionAffect() {
+		return AVAILABLE ? JfrEvents.explosionAffect() : Span.NONE;
+	}
+
+	public static Span packetSend(Identifier packet) {
+		return AVAILABLE ? JfrEvents.packetSend(packet) : Span.NONE;
+	}
+}
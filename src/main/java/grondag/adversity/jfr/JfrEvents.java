@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import net.minecraft.util.Identifier;
+
+/** Only loaded when JFR is present - see {@link AdversityJfr} */
+enum JfrEvents {
+	;
+
+	static boolean isAvailable() {
+		return FlightRecorder.isAvailable();
+	}
+
+	// event types are looked up once so a disabled event is a flag check with no allocation
+	private static final EventType TROLL = EventType.getEventType(TrollEvent.class);
+	private static final EventType TRUNK_BUILD = EventType.getEventType(TrunkBuildEvent.class);
+	private static final EventType BRANCH_BUILD = EventType.getEventType(BranchBuildEvent.class);
+	private static final EventType LEAF_GROWTH = EventType.getEventType(LeafGrowthEvent.class);
+	private static final EventType EXPLOSION_COLLECT = EventType.getEventType(ExplosionCollectEvent.class);
+	private static final EventType EXPLOSION_AFFECT = EventType.getEventType(ExplosionAffectEvent.class);
+	private static final EventType PACKET_SEND = EventType.getEventType(PacketSendEvent.class);
+
+	static Span troll() {
+		return TROLL.isEnabled() ? new TrollEvent().start() : Span.NONE;
+	}
+
+	static Span trunkBuild() {
+		return TRUNK_BUILD.isEnabled() ? new TrunkBuildEvent().start() : Span.NONE;
+	}
+
+	static Span branchBuild() {
+		return BRANCH_BUILD.isEnabled() ? new BranchBuildEvent().start() : Span.NONE;
+	}
+
+	static Span leafGrowth() {
+		return LEAF_GROWTH.isEnabled() ? new LeafGrowthEvent().start() : Span.NONE;
+	}
+
+	static Span explosionCollect() {
+		return EXPLOSION_COLLECT.isEnabled() ? new ExplosionCollectEvent().start() : Span.NONE;
+	}
+
+	static Span explosionAffect() {
+		return EXPLOSION_AFFECT.isEnabled() ? new ExplosionAffectEvent().start() : Span.NONE;
+	}
+
+	static Span packetSend(Identifier packet) {
+		if (!PACKET_SEND.isEnabled()) {
+			return Span.NONE;
+		}
+
+		final PacketSendEvent e = new PacketSendEvent();
+		e.packet = packet.toString();
+		return e.start();
+	}
+
+	@StackTrace(false)
+	abstract static class SpanEvent extends Event implements Span {
+		@Label("Positions Touched")
+		int touched;
+
+		@Label("Blocks Changed")
+		int changed;
+
+		@Label("Bytes Sent")
+		@DataAmount
+		int bytes;
+
+		/** Settings can change after the type check - disabled events still hand out {@link Span#NONE} */
+		Span start() {
+			if (!isEnabled()) {
+				return Span.NONE;
+			}
+
+			begin();
+			return this;
+		}
+
+		@Override
+		public void finish(int touched, int changed, int bytes) {
+			end();
+
+			if (shouldCommit()) {
+				this.touched = touched;
+				this.changed = changed;
+				this.bytes = bytes;
+				commit();
+			}
+		}
+	}
+
+	@Name("grondag.adversity.Troll")
+	@Label("Troll Pass")
+	@Description("Doom tree converting blocks and harvesting entities around it")
+	@Category({"Adversity", "Doom Tree"})
+	static class TrollEvent extends SpanEvent { }
+
+	@Name("grondag.adversity.TrunkBuild")
+	@Label("Trunk Build")
+	@Category({"Adversity", "Doom Tree"})
+	static class TrunkBuildEvent extends SpanEvent { }
+
+	@Name("grondag.adversity.BranchBuild")
+	@Label("Branch Build")
+	@Category({"Adversity", "Doom Tree"})
+	static class BranchBuildEvent extends SpanEvent { }
+
+	@Name("grondag.adversity.LeafGrowth")
+	@Label("Leaf Growth")
+	@Category({"Adversity", "Doom Tree"})
+	static class LeafGrowthEvent extends SpanEvent { }
+
+	@Name("grondag.adversity.ExplosionCollect")
+	@Label("Explosion Collect")
+	@Description("Ray casting and entity damage for one explosion")
+	@Category({"Adversity", "Explosion"})
+	static class ExplosionCollectEvent extends SpanEvent { }
+
+	@Name("grondag.adversity.ExplosionAffect")
+	@Label("Explosion Affect")
+	@Description("Block removal, drops and effects for one explosion")
+	@Category({"Adversity", "Explosion"})
+	static class ExplosionAffectEvent extends SpanEvent { }
+
+	@Name("grondag.adversity.PacketSend")
+	@Label("Packet Send")
+	@Category({"Adversity", "Network"})
+	static class PacketSendEvent extends SpanEvent {
+		@Label("Packet")
+		String packet;
+	}
+}
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package grondag.adversity.mixin;
+
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+
+import net.minecraft.util.PackedIntegerArray;
+import net.minecraft.world.chunk.Palette;
+import net.minecraft.world.chunk.PalettedContainer;
+
+import grondag.adversity.block.treeheart.PalettedContainerAccess;
+
+@Mixin(PalettedContainer.class)
+public abstract class MixinPalettedContainer<T> implements PalettedContainerAccess {
+	@Shadow @Final private Palette<T> fallbackPalette;
+	@Shadow protected PackedIntegerArray data;
+	@Shadow private Palette<T> palette;
+	@Shadow private int paletteSize;
+
+	@Override
+	public boolean snapshotGlobal() {
+		return palette == fallbackPalette;
+	}
+
+	@Override
+	public int snapshotBits() {
+		return paletteSize;
+	}
+
+	@Override
+	public long[] snapshotStorage() {
+		return data.getStorage();
+	}
+
+	@Override
+	public Object snapshotEntry(int index) {
+		return palette.getByIndex(index);
+	}
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.mixin;
+
+import java.util.List;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import grondag.adversity.entity.DoomableChunkAccess;
+import grondag.adversity.entity.WalkerChunkAccess;
+import grondag.adversity.entity.WalkerEntity;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.LivingEntity;
+import net.minecraft.world.chunk.WorldChunk;
+
+@Mixin(WorldChunk.class)
+public abstract class MixinWorldChunk implements DoomableChunkAccess, WalkerChunkAccess {
+	@SuppressWarnings("unchecked")
+	private final ObjectArrayList<LivingEntity>[] doomCandidates = new ObjectArrayList[16];
+	private ObjectArrayList<WalkerEntity> walkers;
+
+	/** Chunk has already clamped and assigned the section by now */
+	@Inject(method = "addEntity", at = @At(value = "RETURN"))
+	private void onAddEntity(Entity entity, CallbackInfo ci) {
+		if (entity instanceof LivingEntity && !((WorldChunk)(Object) this).getWorld().isClient) {
+			final int section = clamp(entity.chunkY);
+			ObjectArrayList<LivingEntity> list = doomCandidates[section];
+
+			if (list == null) {
+				list = new ObjectArrayList<>();
+				doomCandidates[section] = list;
+			}
+
+			list.add((LivingEntity) entity);
+
+			if (entity instanceof WalkerEntity) {
+				if (walkers == null) {
+					walkers = new ObjectArrayList<>();
+				}
+
+				walkers.add((WalkerEntity) entity);
+			}
+		}
+	}
+
+	/** Entities moving between sections or chunks come through here and then addEntity */
+	@Inject(method = "remove(Lnet/minecraft/entity/Entity;I)V", at = @At(value = "HEAD"))
+	private void onRemoveEntity(Entity entity, int section, CallbackInfo ci) {
+		if (entity instanceof LivingEntity) {
+			final ObjectArrayList<LivingEntity> list = doomCandidates[clamp(section)];
+
+			if (list != null) {
+				list.remove(entity);
+			}
+
+			if (walkers != null && entity instanceof WalkerEntity) {
+				walkers.remove(entity);
+			}
+		}
+	}
+
+	@Override
+	public List<LivingEntity> getDoomCandidates(int sectionY) {
+		return sectionY < 0 || sectionY > 15 ? null : doomCandidates[sectionY];
+	}
+
+	@Override
+	public List<WalkerEntity> getWalkers() {
+		return walkers;
+	}
+
+	private static int clamp(int section) {
+		return section < 0 ? 0 : section > 15 ? 15 : section;
+	}
+}
@@ -25,13 +25,11 @@ import java.util.Random;
 
 import grondag.adversity.Adversity;
 import grondag.adversity.block.player.AlchemicalBlockEntity;
-import io.netty.buffer.Unpooled;
+import grondag.adversity.jfr.AdversityJfr;
+import grondag.adversity.jfr.Span;
 import io.netty.util.internal.ThreadLocalRandom;
 import net.fabricmc.fabric.api.network.PacketContext;
-import net.fabricmc.fabric.api.network.ServerSidePacketRegistry;
-import net.fabricmc.fabric.api.server.PlayerStream;
 import net.minecraft.block.entity.BlockEntity;
-import net.minecraft.network.Packet;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.PacketByteBuf;
 import net.minecraft.util.math.BlockPos;
@@ -41,10 +39,12 @@ public enum AlchemyCraftS2C {
 	;
 
 	public static void send(World world, BlockPos pos) {
-		final PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+		final Span span = AdversityJfr.packetSend(IDENTIFIER);
+		final PacketByteBuf buf = EffectsS2C.payload();
 		buf.writeBlockPos(pos);
-		final Packet<?> packet = ServerSidePacketRegistry.INSTANCE.toPacket(IDENTIFIER, buf);
-		PlayerStream.around(world, pos, 32).forEach(p -> ServerSidePacketRegistry.INSTANCE.sendToPlayer(p, packet));
+		final int size = buf.readableBytes();
+		final int count = EffectsS2C.sendAll(PlayerIndex.around(world, pos.getX() + 0.5, pos.getY() + 0.5, pos.getZ() + 0.5, 32).iterator(), EffectsS2C.ALCHEMY_CRAFT, IDENTIFIER, buf);
+		span.finish(1, 0, size * count);
 	}
 
 	public static void handle(PacketContext context, PacketByteBuf buffer) {
@@ -26,24 +26,34 @@ import static grondag.fermion.position.PackedBlockPos.getX;
 import static grondag.fermion.position.PackedBlockPos.getY;
 import static grondag.fermion.position.PackedBlockPos.getZ;
 
+import java.util.Iterator;
 import java.util.Random;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
 import io.netty.buffer.Unpooled;
 import io.netty.util.internal.ThreadLocalRandom;
 
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.network.Packet;
 import net.minecraft.particle.ParticleTypes;
+import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.sound.SoundCategory;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.PacketByteBuf;
+import net.minecraft.util.math.ChunkSectionPos;
 import net.minecraft.world.World;
 
 import net.fabricmc.fabric.api.network.PacketContext;
 import net.fabricmc.fabric.api.network.ServerSidePacketRegistry;
-import net.fabricmc.fabric.api.server.PlayerStream;
 
 import grondag.adversity.Adversity;
+import grondag.adversity.jfr.AdversityJfr;
+import grondag.adversity.jfr.Span;
 import grondag.adversity.registry.AdversitySounds;
 import grondag.fermion.position.PackedBlockPos;
 import grondag.fermion.position.PackedBlockPosList;
@@ -56,10 +66,176 @@ public enum DoomS2C {
 	public static int DOOM = 1;
 	public static int ICHOR = 2;
 
-	private static final PackedBlockPosList REPORTS  = new PackedBlockPosList();
+	private static final int TYPE_MASK = 3;
+	private static final int RUN_FLAG = 0x4000;
+
+	private static final ThreadLocal<Long2ObjectLinkedOpenHashMap<IntArrayList>> SECTIONS = ThreadLocal.withInitial(Long2ObjectLinkedOpenHashMap::new);
 
-	// PERF: compact with run-length encoding
 	public static void send(World world, PackedBlockPosList reports) {
+		final int limit = reports.size();
+
+		if (limit == 0) {
+			return;
+		}
+
+		final Span span = AdversityJfr.packetSend(IDENTIFIER_V2);
+
+		// only players near the report bounds can be near a report
+		int minX = Integer.MAX_VALUE;
+		int minZ = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int maxZ = Integer.MIN_VALUE;
+
+		for (int i = 0; i < limit; i++) {
+			final long r = reports.get(i);
+			final int x = getX(r);
+			final int z = getZ(r);
+
+			minX = Math.min(minX, x);
+			maxX = Math.max(maxX, x);
+			minZ = Math.min(minZ, z);
+			maxZ = Math.max(maxZ, z);
+		}
+
+		final Iterator<ServerPlayerEntity> players = PlayerIndex.within(world, minX - 32, minZ - 32, maxX + 32, maxZ + 32).iterator();
+		PacketByteBuf payload = null;
+		Packet<?> packet = null;
+		Packet<?> legacyPacket = null;
+		int size = 0;
+		int legacySize = 0;
+		int bytes = 0;
+
+		while (players.hasNext()) {
+			final ServerPlayerEntity p = players.next();
+
+			if (!reports.isNear(PackedBlockPos.pack(p.getX(), p.getY(), p.getZ()), 32)) {
+				continue;
+			}
+
+			if (EffectsS2C.canReceive(p)) {
+				if (payload == null) {
+					payload = encode(reports, EffectsS2C.payload());
+				}
+
+				final PacketByteBuf out = EffectsS2C.begin(p, EffectsS2C.DOOM);
+
+				if (out != null) {
+					out.writeBytes(payload, 0, payload.readableBytes());
+					bytes += payload.readableBytes();
+				}
+			} else if (ServerSidePacketRegistry.INSTANCE.canPlayerReceive(p, IDENTIFIER_V2)) {
+				// clients from before version 2 only register the original channel
+				if (packet == null) {
+					final PacketByteBuf buf = encode(reports);
+					size = buf.readableBytes();
+					packet = ServerSidePacketRegistry.INSTANCE.toPacket(IDENTIFIER_V2, buf);
+				}
+
+				ServerSidePacketRegistry.INSTANCE.sendToPlayer(p, packet);
+				bytes += size;
+			} else {
+				if (legacyPacket == null) {
+					final PacketByteBuf buf = encodeLegacy(reports);
+					legacySize = buf.readableBytes();
+					legacyPacket = ServerSidePacketRegistry.INSTANCE.toPacket(IDENTIFIER, buf);
+				}
+
+				ServerSidePacketRegistry.INSTANCE.sendToPlayer(p, legacyPacket);
+				bytes += legacySize;
+			}
+		}
+
+		span.finish(reports.size(), 0, bytes);
+	}
+
+	/**
+	 * Version 2 payload: reports grouped by chunk section. Each section is a packed
+	 * section position and an entry count, followed by one short per entry:
+	 * 12-bit local offset (x, z, y with y lowest), 2-bit type and a run flag.
+	 * Runs continue straight up in the same section with the same type and
+	 * are followed by one byte holding the run length less two. Duplicate
+	 * reports are sent once.
+	 */
+	public static PacketByteBuf encode(PackedBlockPosList reports) {
+		return encode(reports, new PacketByteBuf(Unpooled.buffer()));
+	}
+
+	/** Appends the version 2 payload to the given buffer and returns it */
+	public static PacketByteBuf encode(PackedBlockPosList reports, PacketByteBuf buf) {
+		final Long2ObjectLinkedOpenHashMap<IntArrayList> sections = SECTIONS.get();
+		final int limit = reports.size();
+
+		for (int i = 0; i < limit; i++) {
+			final long p = reports.get(i);
+			final int x = getX(p);
+			final int y = getY(p);
+			final int z = getZ(p);
+			final long key = ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4);
+			IntArrayList entries = sections.get(key);
+
+			if (entries == null) {
+				entries = new IntArrayList();
+				sections.put(key, entries);
+			}
+
+			entries.add((((x & 15) << 8) | ((z & 15) << 4) | (y & 15)) << 2 | (getExtra(p) & TYPE_MASK));
+		}
+
+		buf.writeVarInt(sections.size());
+
+		final ObjectIterator<Long2ObjectMap.Entry<IntArrayList>> it = sections.long2ObjectEntrySet().fastIterator();
+
+		while (it.hasNext()) {
+			final Long2ObjectMap.Entry<IntArrayList> e = it.next();
+			final IntArrayList entries = e.getValue();
+			buf.writeLong(e.getLongKey());
+
+			// client effects don't depend on order, and sorting makes columns contiguous
+			final int[] data = entries.elements();
+			IntArrays.quickSort(data, 0, entries.size());
+
+			// duplicates are dropped, so a section never has more than 16384 entries
+			int size = 0;
+
+			for (int k = 0; k < entries.size(); k++) {
+				if (size == 0 || data[k] != data[size - 1]) {
+					data[size++] = data[k];
+				}
+			}
+
+			final int countIndex = buf.writerIndex();
+			buf.writeShort(0);
+			int count = 0;
+			int i = 0;
+
+			while (i < size) {
+				final int entry = data[i];
+				int run = 1;
+
+				while (i + run < size && data[i + run] == entry + (run << 2) && ((entry >> 2) & 15) + run < 16) {
+					run++;
+				}
+
+				if (run == 1) {
+					buf.writeShort(entry);
+				} else {
+					buf.writeShort(entry | RUN_FLAG);
+					buf.writeByte(run - 2);
+				}
+
+				++count;
+				i += run;
+			}
+
+			buf.setShort(countIndex, count);
+		}
+
+		sections.clear();
+		return buf;
+	}
+
+	/** Version 1 payload - one long per report */
+	public static PacketByteBuf encodeLegacy(PackedBlockPosList reports) {
 		final PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
 		final int limit = reports.size();
 
@@ -69,11 +245,7 @@ public enum DoomS2C {
 			buf.writeLong(reports.get(i));
 		}
 
-		final Packet<?> packet = ServerSidePacketRegistry.INSTANCE.toPacket(IDENTIFIER, buf);
-
-		PlayerStream.world(world)
-		.filter(p -> reports.isNear(PackedBlockPos.pack(p.getX(), p.getY(), p.getZ()), 32))
-		.forEach(p -> ServerSidePacketRegistry.INSTANCE.sendToPlayer(p, packet));
+		return buf;
 	}
 
 	public static void handle(PacketContext context, PacketByteBuf buf) {
@@ -81,31 +253,73 @@ public enum DoomS2C {
 			return;
 		}
 
-		REPORTS.clear();
+		handleReports(context, decode(buf));
+	}
+
+	/** Reads one version 2 payload written by {@link #encode(PackedBlockPosList, PacketByteBuf)} */
+	public static PackedBlockPosList decode(PacketByteBuf buf) {
+		final PackedBlockPosList reports = new PackedBlockPosList();
+		final int sectionCount = buf.readVarInt();
+
+		for (int s = 0; s < sectionCount; s++) {
+			final long key = buf.readLong();
+			final int baseX = ChunkSectionPos.getWorldCoord(ChunkSectionPos.getX(key));
+			final int baseY = ChunkSectionPos.getWorldCoord(ChunkSectionPos.getY(key));
+			final int baseZ = ChunkSectionPos.getWorldCoord(ChunkSectionPos.getZ(key));
+			final int count = buf.readUnsignedShort();
+
+			for (int i = 0; i < count; i++) {
+				final int entry = buf.readUnsignedShort();
+				final int run = (entry & RUN_FLAG) == 0 ? 1 : buf.readUnsignedByte() + 2;
+				final int type = entry & TYPE_MASK;
+				final int offset = (entry >> 2) & 0xFFF;
+				final int x = baseX + (offset >> 8);
+				final int z = baseZ + ((offset >> 4) & 15);
+				final int y = baseY + (offset & 15);
+
+				for (int r = 0; r < run; r++) {
+					reports.add(PackedBlockPos.pack(x, y + r, z, type));
+				}
+			}
+		}
+
+		return reports;
+	}
+
+	public static void handleLegacy(PacketContext context, PacketByteBuf buf) {
+		if (context.getPlayer() == null) {
+			return;
+		}
 
 		final int limit = buf.readVarInt();
+		final PackedBlockPosList reports = new PackedBlockPosList();
 
 		for (int i = 0; i < limit; i++) {
-			REPORTS.add(buf.readLong());
+			reports.add(buf.readLong());
 		}
 
+		handleReports(context, reports);
+	}
+
+	/** Reports are decoded into a new list because more may arrive before these are handled */
+	private static void handleReports(PacketContext context, PackedBlockPosList reports) {
 		if (context.getTaskQueue().isOnThread()) {
-			handleInner(context.getPlayer());
+			handleInner(context.getPlayer(), reports);
 		} else {
-			context.getTaskQueue().execute(() -> handleInner(context.getPlayer()));
+			context.getTaskQueue().execute(() -> handleInner(context.getPlayer(), reports));
 		}
 	}
 
-	private static void handleInner(PlayerEntity player) {
+	private static void handleInner(PlayerEntity player, PackedBlockPosList reports) {
 		if (player != null && player.world != null) {
 			final World world = player.world;
 			final Random rand = ThreadLocalRandom.current();
-			final int limit = REPORTS.size();
+			final int limit = reports.size();
 			float vMax = 0;
 			long pMax = 0;
 
 			for (int i = 0; i < limit; i++) {
-				final long p = REPORTS.get(i);
+				final long p = reports.get(i);
 				final int x = getX(p);
 				final int y = getY(p);
 				final int z = getZ(p);
@@ -131,5 +345,7 @@ public enum DoomS2C {
 		}
 	}
 
+	/** Original format, still sent to clients that don't register version 2 */
 	public static Identifier IDENTIFIER = Adversity.REG.id("doom");
+	public static Identifier IDENTIFIER_V2 = Adversity.REG.id("doom_v2");
 }
@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.packet;
+
+import java.util.Iterator;
+
+import javax.annotation.Nullable;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.Packet;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.PacketByteBuf;
+
+import net.fabricmc.fabric.api.network.PacketContext;
+import net.fabricmc.fabric.api.network.ServerSidePacketRegistry;
+
+import grondag.adversity.Adversity;
+import grondag.adversity.jfr.AdversityJfr;
+import grondag.adversity.jfr.Span;
+
+/**
+ * Bundles every effect event a player receives during a server tick into one
+ * packet, sent at end of tick. Each event is a type byte followed by the same
+ * payload its own channel uses. Clients that don't register this channel get
+ * the original per-type packets.
+ */
+public enum EffectsS2C {
+	;
+
+	static final int ALCHEMY_CRAFT = 0;
+	static final int XP_DRAIN = 1;
+	static final int DOOM = 2;
+	static final int WALKER_PULSE = 3;
+
+	/**
+	 * Most events of each type one player gets per tick - the rest are cosmetic and dropped.
+	 * Walker pulses carry the player's knockback so they are never dropped.
+	 */
+	private static final int[] CAPS = {8, 16, 32, Integer.MAX_VALUE};
+
+	private static class Queue {
+		/** Events written since the last finished part */
+		PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+		/** Finished parts of this tick's bundle, in order. Shared parts are duplicates, not copies. */
+		final ObjectArrayList<ByteBuf> parts = new ObjectArrayList<>();
+		final int[] counts = new int[CAPS.length];
+		int size = 0;
+
+		/** Moves anything written so far into parts - the packet will own that buffer */
+		void finishPart() {
+			if (buf.isReadable()) {
+				parts.add(buf);
+				buf = new PacketByteBuf(Unpooled.buffer());
+			}
+		}
+
+		void clear() {
+			parts.clear();
+			buf.clear();
+			size = 0;
+
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] = 0;
+			}
+		}
+	}
+
+	/** Server thread only - queues are kept while the player is online */
+	private static final Reference2ObjectOpenHashMap<PlayerEntity, Queue> QUEUES = new Reference2ObjectOpenHashMap<>();
+
+	private static final PacketByteBuf PAYLOAD = new PacketByteBuf(Unpooled.buffer());
+
+	/** Cleared buffer for building one event on the server thread. Contents are copied when queued. */
+	static PacketByteBuf payload() {
+		PAYLOAD.clear();
+		return PAYLOAD;
+	}
+
+	static boolean canReceive(PlayerEntity player) {
+		return ServerSidePacketRegistry.INSTANCE.canPlayerReceive(player, IDENTIFIER);
+	}
+
+	/**
+	 * Starts an event of the given type for the player and returns the buffer
+	 * to write its payload to. Null if the player already has the most events
+	 * of that type allowed this tick.
+	 */
+	@Nullable
+	static PacketByteBuf begin(PlayerEntity player, int type) {
+		Queue queue = QUEUES.get(player);
+
+		if (queue == null) {
+			queue = new Queue();
+			QUEUES.put(player, queue);
+		}
+
+		if (queue.counts[type] >= CAPS[type]) {
+			return null;
+		}
+
+		queue.counts[type]++;
+		queue.size++;
+		queue.buf.writeByte(type);
+		return queue.buf;
+	}
+
+	/**
+	 * As {@link #begin(PlayerEntity, int)} but the event payload starts with the
+	 * given bytes, which are shared with every other player's bundle instead of
+	 * copied. Returns the buffer for the rest of the payload. The shared buffer
+	 * must be unpooled and must not change after this call.
+	 */
+	@Nullable
+	static PacketByteBuf beginShared(PlayerEntity player, int type, ByteBuf shared) {
+		final PacketByteBuf out = begin(player, type);
+
+		if (out == null) {
+			return null;
+		}
+
+		final Queue queue = QUEUES.get(player);
+		queue.finishPart();
+		queue.parts.add(shared.duplicate());
+		return queue.buf;
+	}
+
+	/** Packet for the original per-type channel, for clients without the bundled channel */
+	static Packet<?> legacyPacket(Identifier id, PacketByteBuf payload) {
+		return ServerSidePacketRegistry.INSTANCE.toPacket(id, new PacketByteBuf(payload.copy()));
+	}
+
+	/**
+	 * Queues the same payload for every player, or sends the legacy packet to those
+	 * who can't receive bundles. Returns the number of players reached.
+	 */
+	static int sendAll(Iterator<? extends PlayerEntity> players, int type, Identifier legacyId, PacketByteBuf payload) {
+		final int size = payload.readableBytes();
+		Packet<?> packet = null;
+		int count = 0;
+
+		while (players.hasNext()) {
+			final PlayerEntity p = players.next();
+
+			if (canReceive(p)) {
+				final PacketByteBuf out = begin(p, type);
+
+				if (out == null) {
+					continue;
+				}
+
+				out.writeBytes(payload, payload.readerIndex(), size);
+			} else {
+				if (packet == null) {
+					packet = legacyPacket(legacyId, payload);
+				}
+
+				ServerSidePacketRegistry.INSTANCE.sendToPlayer(p, packet);
+			}
+
+			++count;
+		}
+
+		return count;
+	}
+
+	/** Sends each player's bundle for the tick - call at end of server tick */
+	public static void flush(MinecraftServer server) {
+		if (QUEUES.isEmpty()) {
+			return;
+		}
+
+		final Span span = AdversityJfr.packetSend(IDENTIFIER);
+		final ObjectIterator<Reference2ObjectMap.Entry<PlayerEntity, Queue>> it = QUEUES.reference2ObjectEntrySet().fastIterator();
+		int events = 0;
+		int bytes = 0;
+
+		while (it.hasNext()) {
+			final Reference2ObjectMap.Entry<PlayerEntity, Queue> e = it.next();
+			final PlayerEntity player = e.getKey();
+			final Queue queue = e.getValue();
+
+			if (player.removed) {
+				it.remove();
+				continue;
+			}
+
+			if (queue.size == 0) {
+				continue;
+			}
+
+			// Parts are wrapped, not copied, and the packet keeps them - the queue starts a new buffer.
+			// Vanilla custom payload packets never release their buffer, so a pooled one would never return to the pool.
+			queue.finishPart();
+			final ObjectArrayList<ByteBuf> parts = queue.parts;
+			final ByteBuf[] components = new ByteBuf[parts.size() + 1];
+			final PacketByteBuf header = new PacketByteBuf(Unpooled.buffer(5));
+			header.writeVarInt(queue.size);
+			components[0] = header;
+
+			for (int i = 0; i < parts.size(); i++) {
+				components[i + 1] = parts.get(i);
+			}
+
+			final PacketByteBuf buf = new PacketByteBuf(Unpooled.wrappedBuffer(components));
+			events += queue.size;
+			bytes += buf.readableBytes();
+			ServerSidePacketRegistry.INSTANCE.sendToPlayer(player, ServerSidePacketRegistry.INSTANCE.toPacket(IDENTIFIER, buf));
+			queue.clear();
+		}
+
+		span.finish(events, 0, bytes);
+	}
+
+	/** Drops queues and their player references when the server stops */
+	public static void clear(MinecraftServer server) {
+		QUEUES.clear();
+	}
+
+	public static void handle(PacketContext context, PacketByteBuf buf) {
+		if (context.getPlayer() == null) {
+			return;
+		}
+
+		final int count = buf.readVarInt();
+
+		for (int i = 0; i < count; i++) {
+			switch (buf.readByte()) {
+			case ALCHEMY_CRAFT:
+				AlchemyCraftS2C.handle(context, buf);
+				break;
+
+			case XP_DRAIN:
+				XpDrainS2C.handle(context, buf);
+				break;
+
+			case DOOM:
+				DoomS2C.handle(context, buf);
+				break;
+
+			case WALKER_PULSE:
+				WalkerPulseS2C.handle(context, buf);
+				break;
+
+			default:
+				// unknown event - can't find where the next one starts
+				Adversity.LOG.warn("[Adversity] Unrecognized effect in packet - remaining effects skipped");
+				return;
+			}
+		}
+	}
+
+	public static Identifier IDENTIFIER = Adversity.REG.id("effects");
+}
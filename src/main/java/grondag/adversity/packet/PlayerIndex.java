@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (C) 2019 grondag
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package grondag.adversity.packet;
+
+import java.util.List;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.World;
+
+/**
+ * Players by chunk for each server world, built on first use each tick and
+ * shared by every sender that tick. Lookups only visit chunks near the
+ * target, so cost follows nearby players rather than world population.
+ * Server thread only. Query results share one list - use it before the next query.
+ */
+public enum PlayerIndex {
+	;
+
+	private static class WorldIndex {
+		long time = Long.MIN_VALUE;
+		final Long2ObjectOpenHashMap<ObjectArrayList<ServerPlayerEntity>> chunks = new Long2ObjectOpenHashMap<>();
+		final ObjectArrayList<ObjectArrayList<ServerPlayerEntity>> spares = new ObjectArrayList<>();
+
+		void rebuild(ServerWorld world) {
+			for (final ObjectArrayList<ServerPlayerEntity> list : chunks.values()) {
+				list.clear();
+				spares.add(list);
+			}
+
+			chunks.clear();
+
+			for (final ServerPlayerEntity player : world.getPlayers()) {
+				final long key = ChunkPos.toLong(MathHelper.floor(player.getX()) >> 4, MathHelper.floor(player.getZ()) >> 4);
+				ObjectArrayList<ServerPlayerEntity> list = chunks.get(key);
+
+				if (list == null) {
+					list = spares.isEmpty() ? new ObjectArrayList<>() : spares.pop();
+					chunks.put(key, list);
+				}
+
+				list.add(player);
+			}
+
+			time = world.getTime();
+		}
+	}
+
+	private static final Reference2ObjectOpenHashMap<World, WorldIndex> INDEXES = new Reference2ObjectOpenHashMap<>();
+	private static final ObjectArrayList<ServerPlayerEntity> RESULT = new ObjectArrayList<>();
+
+	private static WorldIndex index(ServerWorld world) {
+		WorldIndex result = INDEXES.get(world);
+
+		if (result == null) {
+			result = new WorldIndex();
+			INDEXES.put(world, result);
+		}
+
+		if (result.time != world.getTime()) {
+			result.rebuild(world);
+		}
+
+		return result;
+	}
+
+	/** Players within the given distance of a point */
+	public static List<ServerPlayerEntity> around(World world, double x, double y, double z, double radius) {
+		final List<ServerPlayerEntity> result = within(world, MathHelper.floor(x - radius), MathHelper.floor(z - radius), MathHelper.floor(x + radius), MathHelper.floor(z + radius));
+		final double radiusSq = radius * radius;
+		result.removeIf(p -> p.squaredDistanceTo(x, y, z) > radiusSq);
+		return result;
+	}
+
+	/** Players in chunks overlapping the given block area, inclusive - not filtered by exact position */
+	public static List<ServerPlayerEntity> within(World world, int minX, int minZ, int maxX, int maxZ) {
+		final ObjectArrayList<ServerPlayerEntity> result = RESULT;
+		result.clear();
+
+		if (!(world instanceof ServerWorld)) {
+			return result;
+		}
+
+		final WorldIndex index = index((ServerWorld) world);
+
+		if (index.chunks.isEmpty()) {
+			return result;
+		}
+
+		final int minChunkX = minX >> 4;
+		final int minChunkZ = minZ >> 4;
+		final int maxChunkX = maxX >> 4;
+		final int maxChunkZ = maxZ >> 4;
+
+		// large areas with few players - cheaper to check each occupied chunk
+		if ((long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1) > index.chunks.size()) {
+			for (final Long2ObjectMap.Entry<ObjectArrayList<ServerPlayerEntity>> e : index.chunks.long2ObjectEntrySet()) {
+				final long key = e.getLongKey();
+				final int cx = ChunkPos.getPackedX(key);
+				final int cz = ChunkPos.getPackedZ(key);
+
+				if (cx >= minChunkX && cx <= maxChunkX && cz >= minChunkZ && cz <= maxChunkZ) {
+					result.addAll(e.getValue());
+				}
+			}
+		} else {
+			for (int cx = minChunkX; cx <= maxChunkX; cx++) {
+				for (int cz = minChunkZ; cz <= maxChunkZ; cz++) {
+					final ObjectArrayList<ServerPlayerEntity> list = index.chunks.get(ChunkPos.toLong(cx, cz));
+
+					if (list != null) {
+						result.addAll(list);
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	public static void clear(MinecraftServer server) {
+		INDEXES.clear();
+		RESULT.clear();
+	}
+}
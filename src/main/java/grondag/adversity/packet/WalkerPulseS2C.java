@@ -21,14 +21,16 @@
  ******************************************************************************/
 package grondag.adversity.packet;
 
+import java.util.Iterator;
 import java.util.Random;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.util.internal.ThreadLocalRandom;
 
 import net.minecraft.entity.player.PlayerEntity;
-import net.minecraft.network.Packet;
 import net.minecraft.particle.ParticleTypes;
+import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.sound.SoundCategory;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.PacketByteBuf;
@@ -38,21 +40,26 @@ import net.minecraft.world.World;
 
 import net.fabricmc.fabric.api.network.PacketContext;
 import net.fabricmc.fabric.api.network.ServerSidePacketRegistry;
-import net.fabricmc.fabric.api.server.PlayerStream;
 
 import grondag.adversity.Adversity;
 import grondag.adversity.entity.Explodinator;
 import grondag.adversity.entity.Explodinator.ExplosionFX;
 import grondag.adversity.entity.WalkerAttackGoal;
 import grondag.adversity.entity.WalkerEntity;
+import grondag.adversity.jfr.AdversityJfr;
+import grondag.adversity.jfr.Span;
 import grondag.adversity.registry.AdversityParticles;
 import grondag.adversity.registry.AdversitySounds;
 
 public enum WalkerPulseS2C {
 	;
 
+	/** Per-player knockback after the shared explosion data */
+	private static final int SUFFIX_BYTES = 12;
+
 	public static void send(World world, WalkerEntity from, Vec3d to, Explodinator explosion) {
-		final PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+		final Span span = AdversityJfr.packetSend(IDENTIFIER);
+		final PacketByteBuf buf = EffectsS2C.payload();
 		buf.writeVarInt(from.getEntityId());
 		buf.writeDouble(to.x);
 		buf.writeDouble(to.y);
@@ -62,23 +69,57 @@ public enum WalkerPulseS2C {
 		final Vec3d middle = new Vec3d((from.getX() + to.x) * 0.5, (from.getY() + to.y) * 0.5, (from.getZ() + to.z) * 0.5);
 		final double radius = MathHelper.sqrt(middle.squaredDistanceTo(from.getX(), from.getY(), from.getZ())) + 64;
 
-		PlayerStream.around(world, middle, radius).forEach(p -> {
-			final PacketByteBuf playerBuf = new PacketByteBuf(Unpooled.buffer());
-			playerBuf.writeBytes(buf, 0, buf.readableBytes());
+		final Iterator<ServerPlayerEntity> players = PlayerIndex.around(world, middle.x, middle.y, middle.z, radius).iterator();
+		final int size = buf.readableBytes();
+		ByteBuf prefix = null;
+		int bytes = 0;
+
+		while (players.hasNext()) {
+			final ServerPlayerEntity p = players.next();
 			final Vec3d v = explosion.getAffectedPlayers().get(p);
-			playerBuf.writeFloat(v == null ? 0 : (float) v.x);
-			playerBuf.writeFloat(v == null ? 0 : (float) v.y);
-			playerBuf.writeFloat(v == null ? 0 : (float) v.z);
-			final Packet<?> packet = ServerSidePacketRegistry.INSTANCE.toPacket(IDENTIFIER, playerBuf);
-			ServerSidePacketRegistry.INSTANCE.sendToPlayer(p, packet);
-		});
+			final float vx = v == null ? 0 : (float) v.x;
+			final float vy = v == null ? 0 : (float) v.y;
+			final float vz = v == null ? 0 : (float) v.z;
+
+			if (prefix == null) {
+				// Encoded once and shared by every player's bundle or packet below. Vanilla custom
+				// payload packets never release their data, so this relies on unpooled heap buffers
+				// being left to the GC - don't switch it to a pooled allocator.
+				prefix = Unpooled.copiedBuffer(buf);
+			}
+
+			if (EffectsS2C.canReceive(p)) {
+				final PacketByteBuf out = EffectsS2C.beginShared(p, EffectsS2C.WALKER_PULSE, prefix);
+
+				if (out == null) {
+					continue;
+				}
+
+				out.writeFloat(vx);
+				out.writeFloat(vy);
+				out.writeFloat(vz);
+			} else {
+				final ByteBuf suffix = Unpooled.buffer(SUFFIX_BYTES, SUFFIX_BYTES);
+				suffix.writeFloat(vx);
+				suffix.writeFloat(vy);
+				suffix.writeFloat(vz);
+
+				final PacketByteBuf playerBuf = new PacketByteBuf(Unpooled.wrappedBuffer(prefix.duplicate(), suffix));
+				ServerSidePacketRegistry.INSTANCE.sendToPlayer(p, ServerSidePacketRegistry.INSTANCE.toPacket(IDENTIFIER, playerBuf));
+			}
+
+			bytes += size + SUFFIX_BYTES;
+		}
+
+		span.finish(explosion.affectedBlockCount(), 0, bytes);
 	}
 
 	public static void handle(PacketContext context, PacketByteBuf buf) {
 		final World world = context.getPlayer().world;
 		final WalkerEntity walker = (WalkerEntity) world.getEntityById(buf.readVarInt());
 		final Vec3d to = new Vec3d(buf.readDouble(), buf.readDouble(), buf.readDouble());
-		final Explodinator explosion = Explodinator.get().setWorld(world).fromBuffer(buf);
+		// several pulses can arrive before any are handled - only share the pooled instance on thread
+		final Explodinator explosion = (context.getTaskQueue().isOnThread() ? Explodinator.get() : new Explodinator()).setWorld(world).fromBuffer(buf);
 		final float vx = buf.readFloat();
 		final float vy = buf.readFloat();
 		final float vz = buf.readFloat();